@@ -7,10 +7,9 @@ import jangalang.engine.KeyScanner;
 import jangalang.engine.MouseScanner;
 
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-
-import javax.imageio.ImageIO;
+import java.util.List;
 
+import jangalang.client.AssetPack;
 import jangalang.engine.Game;
 
 class Main {
@@ -20,21 +19,21 @@ class Main {
 
     public static void main(String[] args) {
         try {
-            Game.floorTexture = ImageIO.read(Main.class.getResourceAsStream("/textures/walls/wall1.png"));
-            Game.wallTexture = ImageIO.read(Main.class.getResourceAsStream("/textures/ground/Brick_03.png"));
-
-            ArrayList<BufferedImage> weaponSpriteList = new ArrayList<>();
-            weaponSpriteList.add(ImageIO.read(Main.class.getResourceAsStream("/sprites/guns/pistol/2PISA0.png")));
-            weaponSpriteList.add(ImageIO.read(Main.class.getResourceAsStream("/sprites/guns/pistol/2PISB0.png")));
-            weaponSpriteList.add(ImageIO.read(Main.class.getResourceAsStream("/sprites/guns/pistol/2PISD0.png")));
-            weaponSpriteList.add(ImageIO.read(Main.class.getResourceAsStream("/sprites/guns/pistol/2PISF0.png")));
-            Game.weaponSprite = weaponSpriteList.toArray(new BufferedImage[0]);
-
-            ArrayList<BufferedImage> splashScreenList = new ArrayList<>();
-            splashScreenList.add(ImageIO.read(Main.class.getResourceAsStream("/splash-screens/splash-screen1.jpg")));
-            splashScreenList.add(ImageIO.read(Main.class.getResourceAsStream("/splash-screens/splash-screen2.jpg")));
-            splashScreenList.add(ImageIO.read(Main.class.getResourceAsStream("/splash-screens/splash-screen3.jpg")));
-            Game.splashScreens = splashScreenList.toArray(new BufferedImage[0]);
+            // decoded from the asset pack when it is current, otherwise in parallel
+            List<BufferedImage> images = AssetPack.load(List.of(
+                "/textures/walls/wall1.png",
+                "/textures/ground/Brick_03.png",
+                "/sprites/guns/pistol/2PISA0.png",
+                "/sprites/guns/pistol/2PISB0.png",
+                "/sprites/guns/pistol/2PISD0.png",
+                "/sprites/guns/pistol/2PISF0.png",
+                "/splash-screens/splash-screen1.jpg",
+                "/splash-screens/splash-screen2.jpg",
+                "/splash-screens/splash-screen3.jpg"));
+            Game.floorTexture = images.get(0);
+            Game.wallTexture = images.get(1);
+            Game.weaponSprite = images.subList(2, 6).toArray(new BufferedImage[0]);
+            Game.splashScreens = images.subList(6, 9).toArray(new BufferedImage[0]);
         } catch (Exception e) {
             e.printStackTrace();
         }
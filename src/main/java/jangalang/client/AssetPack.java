@@ -0,0 +1,184 @@
+package jangalang.client;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import jangalang.common.ApplicationProperties;
+
+/**
+ * A cache of decoded images: one file of raw int[] pixel blocks behind an index, memory-mapped on
+ * load. The pack is keyed by a CRC of the source files' bytes, so a changed, missing or damaged
+ * pack is rebuilt on the spot: the images are decoded in parallel and written back for the next start.
+ *
+ * Layout, little-endian: magic, version, fingerprint (long), count, then per image the name
+ * (length + UTF-8), flags, width, height and pixel offset (long); pixel blocks follow, 4-aligned.
+ */
+public final class AssetPack {
+    private static final int MAGIC = 0x4B41504A; // "JPAK"
+    private static final int VERSION = 1;
+    private static final int ALPHA = 1;
+
+    private AssetPack() {}
+
+    /** The images at the given classpath paths, from the pack cache directory when it is current. */
+    public static List<BufferedImage> load(List<String> paths) throws IOException {
+        Path dir = Path.of(ApplicationProperties.getOrDefault("assets.cache", ".jangalang-cache"));
+        Path pack = dir.resolve("assets-" + Integer.toHexString(paths.hashCode()) + ".pack");
+
+        // reading the source bytes is cheap next to decoding them
+        byte[][] sources = new byte[paths.size()][];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < sources.length; ++i) {
+            try (InputStream in = AssetPack.class.getResourceAsStream(paths.get(i))) {
+                if (in == null) throw new IOException("Missing resource " + paths.get(i));
+                sources[i] = in.readAllBytes();
+            }
+            crc.update(sources[i]);
+        }
+        final long fingerprint = crc.getValue();
+
+        if (Files.isRegularFile(pack)) {
+            try {
+                List<BufferedImage> images = read(pack, paths, fingerprint);
+                if (images != null) return images;
+            } catch (IOException | RuntimeException e) {
+                // a damaged pack is only a cache miss: rebuild it below
+                System.out.println(pack + ": " + e + ", rebuilding");
+            }
+        }
+
+        List<BufferedImage> images = decode(paths, sources);
+        try {
+            Files.createDirectories(dir);
+            write(pack, paths, fingerprint, images);
+        } catch (IOException e) {
+            // a read-only install still runs, it just decodes every time
+            e.printStackTrace();
+        }
+        return images;
+    }
+
+    private static List<BufferedImage> decode(List<String> paths, byte[][] sources) throws IOException {
+        BufferedImage[] images = new BufferedImage[sources.length];
+        try {
+            IntStream.range(0, sources.length).parallel().forEach(i -> {
+                try {
+                    BufferedImage image = ImageIO.read(new ByteArrayInputStream(sources[i]));
+                    if (image == null) throw new IOException("Unreadable image " + paths.get(i));
+                    images[i] = toInt(image);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return List.of(images);
+    }
+
+    // int-backed ARGB or RGB, so pixels can be written and wrapped without conversion
+    private static BufferedImage toInt(BufferedImage image) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (image.getType() == type) return image;
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics g = result.getGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return result;
+    }
+
+    // the pack's images, null if it is for other sources; a truncated or damaged pack is an IOException
+    private static List<BufferedImage> read(Path pack, List<String> paths, long fingerprint) throws IOException {
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < 4 + 4 + 8 + 4 || size > Integer.MAX_VALUE) throw new IOException("Bad asset pack size " + size);
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            if (buf.getLong() != fingerprint || buf.getInt() != paths.size()) return null;
+
+            List<BufferedImage> images = new ArrayList<>(paths.size());
+            for (String path : paths) {
+                int length = buf.getInt();
+                if (length < 0 || length > buf.remaining()) throw new IOException("Bad asset pack entry");
+                byte[] name = new byte[length];
+                buf.get(name);
+                if (!path.equals(new String(name, StandardCharsets.UTF_8))) return null;
+                int flags = buf.getInt();
+                int width = buf.getInt();
+                int height = buf.getInt();
+                long offset = buf.getLong();
+                // every pixel block must lie inside the file, after the index
+                if (width <= 0 || height <= 0 || (offset & 3) != 0 || offset < buf.position()
+                        || (long) width * height > (size - offset) / 4) {
+                    throw new IOException("Bad asset pack entry " + path);
+                }
+
+                BufferedImage image = new BufferedImage(width, height,
+                        (flags & ALPHA) != 0 ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+                IntBuffer pixels = buf.duplicate().position((int) offset).slice()
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                pixels.get(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+                images.add(image);
+            }
+            return images;
+        }
+    }
+
+    private static void write(Path pack, List<String> paths, long fingerprint, List<BufferedImage> images) throws IOException {
+        long size = 4 + 4 + 8 + 4;
+        for (String path : paths) {
+            size += 4 + path.getBytes(StandardCharsets.UTF_8).length + 4 + 4 + 4 + 8;
+        }
+        long offset = (size + 3) & ~3L;
+        long[] offsets = new long[images.size()];
+        for (int i = 0; i < offsets.length; ++i) {
+            offsets[i] = offset;
+            offset += 4L * images.get(i).getWidth() * images.get(i).getHeight();
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putInt(paths.size());
+        for (int i = 0; i < offsets.length; ++i) {
+            BufferedImage image = images.get(i);
+            byte[] name = paths.get(i).getBytes(StandardCharsets.UTF_8);
+            buf.putInt(name.length).put(name);
+            buf.putInt(image.getType() == BufferedImage.TYPE_INT_ARGB ? ALPHA : 0);
+            buf.putInt(image.getWidth()).putInt(image.getHeight()).putLong(offsets[i]);
+        }
+        for (int i = 0; i < offsets.length; ++i) {
+            buf.position((int) offsets[i]);
+            buf.asIntBuffer().put(((DataBufferInt) images.get(i).getRaster().getDataBuffer()).getData());
+        }
+        buf.rewind();
+
+        // write then rename, so a crash never leaves a half-written pack behind
+        Path tmp = pack.resolveSibling(pack.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) channel.write(buf);
+            // on disk before the rename, or a crash could leave the new name on empty blocks
+            channel.force(true);
+        }
+        Files.move(tmp, pack, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,54 +1,89 @@
 package jangalang.client;
 
 import jangalang.common.PlayerState;
+import jangalang.common.maps.MapAssembly;
 import jangalang.common.maps.MapData;
-import jangalang.common.maps.Wall;
 import jangalang.common.ApplicationProperties;
+import jangalang.common.input.HeldActions;
 import jangalang.common.net.messages.*;
-import jangalang.common.types.Vector;
 
-import java.util.*;
-import java.util.concurrent.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.JPanel;
 
-import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.event.KeyEvent;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 
+import jangalang.client.game.InputEvent;
+import jangalang.client.game.InputHistory;
 import jangalang.client.game.PredictedPlayer;
 import jangalang.client.game.RemotePlayer;
+import jangalang.client.game.RenderState;
+import jangalang.client.render.Camera;
+import jangalang.client.render.HudPass;
+import jangalang.client.render.Raycaster;
+import jangalang.client.render.RenderTarget;
+import jangalang.client.render.SpritePass;
+import jangalang.client.render.TextureStore;
 import jangalang.client.ui.GameMode;
 
 /**
  * Client-side game logic: prediction for local and remote players, reconciliation.
+ * All game state is owned by a single simulation thread; UI input arrives through a lock-free queue,
+ * snapshots through NetworkClient's mailbox, and the renderer only reads published RenderStates.
  */
 public class ClientGame implements GameMode {
     private final NetworkClient net;
     private final int clientId;
-    private MapData map;
-    private volatile boolean started = false;
+    // replaced on the simulation thread when the server changes map, read by the renderer
+    private volatile MapData map;
+    // the map being streamed in, null once complete; simulation thread only
+    private MapAssembly assembly;
+    private volatile boolean running = false;
+    private Thread simulationThread;
     private static final double VIEW_DISTANCE = ApplicationProperties.getDouble("game.user.viewdist");
-    private static final double FOV = ApplicationProperties.getDouble("game.user.fov");
+    private static final double FOV = Math.toRadians(ApplicationProperties.getDouble("game.user.fov"));
     private static final double MOUSE_SENSITIVITY = ApplicationProperties.getDouble("game.user.sensitivity");
-    private static final long FPS = ApplicationProperties.getInt("game.fps");
+    private static final long TPS = ApplicationProperties.getInt("game.tps");
+    private static final long TICK_NANOS = 1_000_000_000L / TPS;
+    // never simulate more than this much wall time in one frame (e.g. after a stall)
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
 
     // predicted local player state
-    private final PredictedPlayer local = new PredictedPlayer();
+    private final PredictedPlayer local;
 
     // other players state map: id -> remote predicted
-    private final ConcurrentMap<Integer, RemotePlayer> others = new ConcurrentHashMap<>();
+    private final Map<Integer, RemotePlayer> others = new HashMap<>();
+
+    // UI events from the EDT, drained by the simulation thread
+    private final Queue<InputEvent> inputEvents = new ConcurrentLinkedQueue<>();
+    // held movement actions, written by the EDT and sampled once per tick
+    private final HeldActions heldActions = new HeldActions();
+    // raw horizontal mouse motion since the last tick; every pixel is consumed exactly once
+    private final AtomicInteger mouseDx = new AtomicInteger();
+
+    // latest state published for the renderer
+    private volatile RenderState renderState;
 
     // pending client inputs for reconciliation
-    private final NavigableMap<Long, InputPacket> pendingInputs = new ConcurrentSkipListMap<>();
+    private final InputHistory pendingInputs = new InputHistory();
 
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-    private volatile long clientTick = 0;
+    private long clientTick = 0;
 
-    private BufferedImage wallTexture = ResourceLoader.wallTextures.get(1);
-    private BufferedImage floorTexture = ResourceLoader.floorTextures.get(2);
+    // fixed-timestep clock: simTimeNanos is the instant the current state represents
+    private long simTimeNanos;
+
+    // renderer state, only touched on the EDT
+    private final SpritePass sprites = new SpritePass();
+    private final HudPass hud = new HudPass(ResourceLoader.weaponSprites);
+    private final Raycaster raycaster = Raycaster.standard(VIEW_DISTANCE).addPass(sprites).addPass(hud);
+    private final Camera camera = new Camera();
+    private final RenderTarget target = new RenderTarget();
+    private final TextureStore textures = ResourceLoader.textures;
 
     private int currentFireFrame = 0;
     private boolean isShooting = false;
@@ -59,52 +94,155 @@ public class ClientGame implements GameMode {
         this.net = net;
         this.clientId = net.getAssignedId();
         this.map = net.getMap();
-        // set snapshot callback
-        net.setOnSnapshot(this::onSnapshot);
+        if (net.getStreamedWalls() > 0) {
+            this.assembly = new MapAssembly(map, net.getStreamedWalls(), net.getRound(), net.getLayout());
+        }
+        this.local = new PredictedPlayer(map.compiled());
     }
 
     public void start() {
-        // tick loop at client fps for local prediction
-        long ms = 1000L / FPS;
-        executor.scheduleAtFixedRate(this::clientTick, 0, ms, TimeUnit.MILLISECONDS);
-        started = true;
+        simTimeNanos = System.nanoTime();
+        renderState = new RenderState(simTimeNanos, clientTick, 0, 0, local, others.values(), others.size());
+        running = true;
+        simulationThread = new Thread(this::runSimulation, "client-simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
     }
     public void stop() {
-        executor.shutdownNow();
-        started = false;
+        running = false;
+        if (simulationThread != null) {
+            simulationThread.interrupt();
+        }
     }
 
-    // call to send input from UI: forward/back/left/right, mouseDelta
-    public void sendInput(boolean forward, boolean backward, boolean left, boolean right, double mouseDelta) {
+    private void runSimulation() {
+        while (running) {
+            try {
+                update();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            long wait = simTimeNanos + TICK_NANOS - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    // predict and send one tick of input: held actions, mouseDelta
+    private void sendInput(int actions, double mouseDelta) {
         clientTick++;
         double newView = local.getViewAngle() + mouseDelta;
-        InputPacket ip = new InputPacket(clientId, clientTick, forward, backward, left, right, mouseDelta, newView);
+        InputPacket ip = new InputPacket(clientId, clientTick, actions, mouseDelta, newView);
         // apply prediction locally
         local.applyInput(ip);
-        pendingInputs.put(clientTick, ip);
+        pendingInputs.add(clientTick, actions, newView, local.getXCoord(), local.getYCoord());
         // send to server via UDP
         net.sendInput(ip);
     }
 
-    // called periodically to simulate local physics a frame (simple; already applied in sendInput)
+    // one fixed simulation step: keep the previous state for interpolation, then advance
     private void clientTick() {
-        // For now no periodic state update required; we rely on sendInput applying movement.
-        // We do update other players' extrapolation here
-        double dt = 1.0 / FPS;
+        local.storePrevious();
+        double viewAngle = mouseDx.getAndSet(0) * MOUSE_SENSITIVITY;
+
+        sendInput(heldActions.get(), viewAngle);
+        advanceWeapon();
+
+        // remote players play back their snapshot buffers at the time this tick represents
+        double tickTimeMs = (simTimeNanos + TICK_NANOS) / 1e6;
         for (RemotePlayer rp : others.values()) {
-            rp.simulate(dt);
+            rp.update(tickTimeMs);
+        }
+    }
+
+    private void advanceWeapon() {
+        if (this.isShooting) {
+            this.frameTimer++;
+            if (this.frameTimer >= this.frameDelay) {
+                this.frameTimer = 0;
+                this.currentFireFrame++;
+                if (this.currentFireFrame >= ResourceLoader.weaponSprites.size()) {
+                    this.isShooting = false;
+                    this.currentFireFrame = 0;
+                }
+            }
         }
     }
 
-    // called on incoming authoritative state from server (UDP)
+    private void drainInputEvents() {
+        InputEvent e;
+        while ((e = inputEvents.poll()) != null) {
+            switch (e.type) {
+                case MOUSE_CLICKED -> {
+                    if (!isShooting) {
+                        this.isShooting = true;
+                        this.currentFireFrame = 0;
+                        this.frameTimer = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    // how far the renderer is between the previous and the current simulation step (0..1)
+    private static double renderAlpha(RenderState state) {
+        double alpha = (System.nanoTime() - state.tickNanos) / (double) TICK_NANOS;
+        return Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    // the server moved to another map: predict and render on it from now on
+    private void onMapChange(MapChange change) {
+        assembly = change.streamedWalls > 0 ? new MapAssembly(change.map, change.streamedWalls, change.round, change.layout) : null;
+        map = change.map;
+        local.setMap(map.compiled());
+        // remote players are respawned too; interpolating from their old positions would streak
+        others.clear();
+        System.out.println("Map changed to " + change.name + " (round " + change.round + ")");
+    }
+
+    // take every map change and chunk that arrived; a partial map is republished once per call
+    private void drainMapUpdates() {
+        boolean grew = false;
+        Object update;
+        while ((update = net.pollMapUpdate()) != null) {
+            if (update instanceof MapChange) {
+                onMapChange((MapChange) update);
+                grew = false;
+            } else if (update instanceof MapChunk) {
+                MapChunk chunk = (MapChunk) update;
+                // chunks of a map the server has already moved on from
+                if (assembly == null || chunk.round != assembly.getRound()) continue;
+                assembly.addWalls(chunk.indices, chunk.walls, chunk.lightStarts, chunk.lightOffsets, chunk.wallLight);
+                assembly.addCells(chunk.pvsRect, chunk.cellStarts, chunk.cellOffsets, chunk.cellWalls);
+                assembly.addFloor(chunk.floorRect, chunk.floorLight);
+                grew = true;
+                if (chunk.last) {
+                    if (!assembly.isComplete()) {
+                        System.out.printf("Map stream ended with %d of %d walls%n", assembly.getReceived(), assembly.getTotal());
+                    }
+                    map = assembly.map();
+                    local.setMap(map.compiled());
+                    assembly = null;
+                    grew = false;
+                }
+            }
+        }
+        if (grew) {
+            map = assembly.map();
+            local.setMap(map.compiled());
+        }
+    }
+
+    // apply the newest authoritative state from the server
     private void onSnapshot(StateSnapshot snap) {
+        double receivedMs = snap.receivedNanos / 1e6;
         // iterate server players
         for (PlayerState ps : snap.players) {
             if (ps.id == clientId) {
-                // reconciliation for local player
-                double dx = ps.xCoord - local.getXCoord();
-                double dy = ps.yCoord - local.getYCoord();
-                double err = Math.hypot(dx,dy);
+                // reconciliation for local player: compare against what we predicted for the acked tick
+                double err = pendingInputs.predictionError(snap.ackClientTick, ps.xCoord, ps.yCoord);
+                pendingInputs.acknowledge(snap.ackClientTick);
                 if (err > 0.001) {
                     // correct and replay pending inputs after ack tick
                     local.setXCoord(ps.xCoord);
@@ -114,333 +252,88 @@ public class ClientGame implements GameMode {
                     local.setViewAngle(ps.viewAngle);
 
                     // replay all pending inputs with tick > snap.ackClientTick
-                    long ack = snap.ackClientTick;
-                    SortedMap<Long, InputPacket> toReplay = pendingInputs.tailMap(ack+1);
-                    List<Long> keys = new ArrayList<>(toReplay.keySet());
-                    for (long k : keys) {
-                        InputPacket ip = pendingInputs.get(k);
-                        local.applyInput(ip);
-                    }
+                    pendingInputs.replay(local);
                 }
-                // drop acknowledged inputs
-                long ack = snap.ackClientTick;
-                pendingInputs.headMap(ack+1).clear();
             } else {
                 // update remote player authoritative state
                 RemotePlayer rp = others.computeIfAbsent(ps.id, RemotePlayer::new);
-                rp.receiveServerState(ps);
+                rp.receiveServerState(ps, snap.serverTick, receivedMs);
             }
         }
     }
 
-    // expose state for rendering
-    public double getLocalX() {
-        return local.getXCoord();
-    }
-
-    public double getLocalY() {
-        return local.getYCoord();
-    }
-
-    public double getLocalViewAngle() {
-        return local.getViewAngle();
+    public RenderState getRenderState() {
+        return renderState;
     }
 
     public MapData getMap() {
         return map;
     } // map filled during handshake by NetworkClient; left for you to integrate
 
-    // GameMode interface methods (UI will call these)
+    // GameMode interface methods; update() runs on the simulation thread, the rest on the EDT
     @Override public void update() {
-        boolean forward = local.keySet.contains("w");
-        boolean backward = local.keySet.contains("s");
-        boolean left = local.keySet.contains("a");
-        boolean right = local.keySet.contains("d");
-        double viewAngle = local.mouseUpdated ? local.mouseDelta : 0;
-        local.mouseUpdated = false;
-
-        sendInput(forward, backward, left, right, viewAngle);
-    }
-
-    @Override
-    public void render(JPanel window, Graphics g) {
-        final int screenW = window.getWidth();
-        final int screenH = window.getHeight();
+        if (!running) return;
 
-        // --- Prepare fast framebuffer ---
-        // Create a single buffered image we can write pixels into (INT_RGB for speed)
-        BufferedImage frame = new BufferedImage(screenW, screenH, BufferedImage.TYPE_INT_RGB);
-        final int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
-
-        final int skyColor = (105 << 16) | (12 << 8) | 15;
-        // Render sky half
-        for (int y = 0; y < screenH / 2; ++y) {
-            int i = y * screenW;
-            for (int x = 0; x < screenW; ++x) pixels[i++] = skyColor;
+        // run as many fixed ticks as real time allows; rendering interpolates the remainder
+        long now = System.nanoTime();
+        if (now - simTimeNanos > MAX_FRAME_NANOS) {
+            simTimeNanos = now - MAX_FRAME_NANOS;
         }
-
-        final int floorBase = (30 << 16) | (30 << 8) | 30;
-        // Render floor half
-        for (int y = screenH / 2; y < screenH; ++y) {
-            int idx = y * screenW;
-            for (int x = 0; x < screenW; ++x) pixels[idx++] = floorBase;
+        drainMapUpdates();
+        // at most one (the newest) snapshot per update, however many arrived
+        StateSnapshot snap = net.pollSnapshot();
+        if (snap != null) {
+            onSnapshot(snap);
         }
-
-        // --- Cache player / camera vectors and texture pixel arrays ---
-        final double ox = local.getXCoord();
-        final double oy = local.getYCoord();
-
-        // center view vector and player angle
-        Vector center = new Vector(local.getViewAngle());
-        final double dirX = center.x;
-        final double dirY = center.y;
-
-        // Precompute camera plane (perpendicular to view dir). We need this for floor-casting interpolation.
-        // plane vector length is tan(FOV/2)
-        final double planeScale = Math.tan(FOV / 2.0);
-        final double planeX = -dirY * planeScale;
-        final double planeY =  dirX * planeScale;
-
-        // fetch texture pixels once (fast access)
-        final BufferedImage wallTex = this.wallTexture;
-        final int wallW = wallTex.getWidth();
-        final int wallH = wallTex.getHeight();
-        final int[] wallPixels = new int[wallW * wallH];
-        wallTex.getRGB(0, 0, wallW, wallH, wallPixels, 0, wallW);
-
-        final BufferedImage floorTex = this.floorTexture;
-        final int floorW = floorTex.getWidth();
-        final int floorH = floorTex.getHeight();
-        final int[] floorPixels = new int[floorW * floorH];
-        floorTex.getRGB(0, 0, floorW, floorH, floorPixels, 0, floorW);
-
-        // precompute proj plane distance used for vertical slice height -> helps remove fish-eye
-        final double projPlaneDist = (screenW / 2.0) / Math.tan(FOV / 2.0);
-
-        // --- FLOOR CASTING (per-row) ---
-        // We'll use interpolation between left and right ray directions for each row.
-        // Precompute left and right ray directions (for cameraX = -1 and +1)
-        final double leftRayX = dirX + planeX * -1.0;
-        final double leftRayY = dirY + planeY * -1.0;
-        final double diffRayX = (dirX + planeX * 1.0) - leftRayX;
-        final double diffRayY = (dirY + planeY * 1.0) - leftRayY;
-
-        final int halfH = screenH / 2;
-        // iterate rows bottom half only
-        for (int y = halfH; y < screenH; ++y) {
-            // row distance: how far in world units this row corresponds to (approximation)
-            // Derived from similar triangles: rowDistance = projPlaneDist * worldCamHeight / (y - screenH/2)
-            // We'll use worldCamHeight = 1.0 (unit wall / floor height) — tweakable if you add camera height.
-            final double rowFactor = (double) (y - halfH);
-            if (rowFactor == 0) continue;
-            final double rowDistance = projPlaneDist / rowFactor; // simple, fast
-
-            // Interpolate start world point (floor) for x=0 and step per column
-            // worldX = ox + dir * rowDistance; but we need different direction per column between leftRay and rightRay.
-            // Precompute base for left ray:
-            double worldX = (ox * -0.5) + leftRayX * rowDistance;
-            double worldY = (oy * -0.5) + leftRayY * rowDistance;
-            // step increments (difference across the screen)
-            final double stepX = diffRayX * (rowDistance / (double) (screenW - 1));
-            final double stepY = diffRayY * (rowDistance / (double) (screenW - 1));
-
-            final int baseIdx = y * screenW;
-            final boolean floorWIsSquared = (floorW & (floorW - 1)) != 0;
-            final boolean floorHIsSquared = (floorH & (floorH - 1)) != 0;
-            final double minShade = 0.2;
-            final double shadeRange = 0.8;
-            for (int x = 0; x < screenW; ++x) {
-                // sample floor texture using fractional part (wrap)
-                final double fx = worldX - Math.floor(worldX);
-                final double fy = worldY - Math.floor(worldY);
-
-                final int tx = floorWIsSquared
-                    ? ((int) (Math.abs(fx * floorW))) % floorW
-                    : (int) (fx * floorW) & (floorW - 1);
-                final int ty = floorHIsSquared
-                    ? ((int) (Math.abs(fy * floorH))) % floorH
-                    : (int) (fy * floorH) & (floorH - 1);
-
-                final int fpix = floorPixels[ty * floorW + tx];
-
-                // Apply simple distance-based darkening (using rowDistance)
-                final double shade = minShade + shadeRange * (1 - Math.min(rowDistance / VIEW_DISTANCE, 1.0));
-
-                pixels[baseIdx + x] =
-                    (((int)(((fpix >> 16) & 0xFF) * shade)) << 16) |
-                    (((int)(((fpix >> 8) & 0xFF) * shade)) << 8) |
-                    ((int)((fpix & 0xFF) * shade));
-
-                worldX += stepX;
-                worldY += stepY;
-            }
+        drainInputEvents();
+        boolean ticked = false;
+        while (now - simTimeNanos >= TICK_NANOS) {
+            clientTick();
+            simTimeNanos += TICK_NANOS;
+            ticked = true;
         }
-
-        // --- WALL RENDERING (per-column) ---
-        final double textureScaleHorizontal = 2.0; // Tiling for horizontal walls
-        final double textureScaleVertical = 1.0; // Tiling for vertical walls
-
-        for (int x = 0; x < screenW; ++x) {
-            final double cameraX = (2.0 * x / (screenW - 1) - 1.0);
-            double rdx = dirX + planeX * cameraX;
-            double rdy = dirY + planeY * cameraX;
-
-            double closest = Double.POSITIVE_INFINITY;
-            Wall hitWall = null;
-            double hitX = 0.0;
-            double hitY = 0.0;
-
-            // Find closest wall intersection
-            for (Wall wall : map.getWalls()) {
-                final Double u = wall.rayIntersect(ox, oy, rdx, rdy);
-                if (u != null && u > 1e-9 && u < closest) {
-                    closest = u;
-                    hitWall = wall;
-                    hitX = ox + rdx * u;
-                    hitY = oy + rdy * u;
-                }
-            }
-
-            if (closest == Double.POSITIVE_INFINITY) continue;
-
-            // double perpDist = closest;
-            final int lineHeight = (int) (screenH / closest);
-            int drawStart = screenH / 2 - lineHeight / 2;
-            int drawEnd = screenH / 2 + lineHeight / 2;
-
-            if (drawStart < 0)
-                drawStart = 0;
-            if (drawEnd >= screenH)
-                drawEnd = screenH - 1;
-
-            // Texture coordinate calculation with intelligent tiling
-            double texXf = 0.0;
-            double textureScale = textureScaleHorizontal; // default
-
-            if (hitWall != null) {
-                final double wallDx = hitWall.end.getKey() - hitWall.start.getKey();
-                final double wallDy = hitWall.end.getValue() - hitWall.start.getValue();
-                final double wallLength = Math.sqrt(wallDx * wallDx + wallDy * wallDy);
-
-                final double hitDx = hitX - hitWall.start.getKey();
-                final double hitDy = hitY - hitWall.start.getValue();
-
-                final double hitDist = (hitDx * wallDx + hitDy * wallDy) / wallLength;
-
-                // Determine if wall is more horizontal or vertical
-                final boolean isHorizontal = Math.abs(wallDx) > Math.abs(wallDy);
-                textureScale = isHorizontal ? textureScaleHorizontal : textureScaleVertical;
-
-                texXf = hitDist * textureScale;
-                texXf -= Math.floor(texXf);
-            }
-
-            int texCol = (int) (texXf * wallW);
-            texCol = Math.max(0, Math.min(wallW - 1, texCol));
-
-            // Render wall slice
-            for (int y = drawStart; y <= drawEnd; ++y) {
-                final double relativeY = (y - drawStart) / (double) lineHeight;
-                double texY = relativeY * textureScale;
-                texY -= Math.floor(texY);
-
-                int texRow = (int) (texY * wallH);
-                texRow = Math.max(0, Math.min(wallH - 1, texRow));
-
-                final int texturePixel = wallPixels[texRow * wallW + texCol];
-
-                double shade = 1.0 - Math.min(closest / VIEW_DISTANCE, 1.0);
-                shade = 0.3 + 0.7 * shade;
-
-                final int red = (int) (((texturePixel >> 16) & 0xFF) * shade);
-                final int green = (int) (((texturePixel >> 8) & 0xFF) * shade);
-                final int blue = (int) ((texturePixel & 0xFF) * shade);
-                final int shaded = (red << 16) | (green << 8) | blue;
-
-                pixels[y * screenW + x] = shaded;
-            }
+        if (ticked) {
+            renderState = new RenderState(simTimeNanos, clientTick, pendingInputs.size(), currentFireFrame,
+                                          local, others.values(), others.size());
         }
-        // --- BLIT FRAMEBUFFER ONTO SCREEN ---
-        g.drawImage(frame, 0, 0, null);
+    }
 
-        // --- HUD / weapon (draw after framebuffer) ---
-        // Weapon sprite bottom-right scaled
-        if (this.isShooting) {
-            this.frameTimer++;
-            if (this.frameTimer >= this.frameDelay) {
-                this.frameTimer = 0;
-                this.currentFireFrame++;
-                if (this.currentFireFrame >= ResourceLoader.weaponSprites.size()) {
-                    this.isShooting = false;
-                    this.currentFireFrame = 0;
-                }
-            }
-        }
+    @Override
+    public void render(JPanel window, Graphics g) {
+        final int screenW = window.getWidth();
+        final int screenH = window.getHeight();
 
-        BufferedImage weaponSprite = ResourceLoader.weaponSprites.get(this.currentFireFrame);
-
-        final double scale = 0.4; // 30% of screen height
-        final int h = (int)(screenH * scale);
-        final int w = weaponSprite.getWidth() * h / weaponSprite.getHeight();
-        final int wx = Math.max(0, screenW - (int)(w * 1.5));
-        final int wy = Math.max(0, screenH - h);
-        g.drawImage(weaponSprite, wx, wy, w, h, null);
-
-        window.setBackground(Color.darkGray);
-        g.setColor(Color.WHITE);
-        g.drawString(
-                     String.format("Client %d  Local: (%.2f, %.2f), va=%.2f pending=%d",
-                                   clientId,
-                                   local.getXCoord(),
-                                   local.getYCoord(),
-                                   local.getViewAngle(),
-                                   pendingInputs.size()),
-                     10, 20);
-
-        // draw simple markers for remote players
-        int idx = 0;
-        for (RemotePlayer rp : others.values()) {
-            int sx = 100 + (idx * 40);
-            int sy = 40;
-            g.setColor(Color.CYAN);
-            g.fillOval(sx, sy, 12, 12);
-            g.setColor(Color.WHITE);
-            g.drawString(
-                         String.format("P%d (%.2f,%.2f)",
-                                       rp.getId(),
-                                       rp.getXCoord(),
-                                       rp.getYCoord()),
-                         sx + 16, sy + 10);
-            idx++;
+        final RenderState state = this.renderState;
+        if (state == null) return;
+        final double alpha = renderAlpha(state);
+        final double ox = state.getX(alpha);
+        final double oy = state.getY(alpha);
+        final double viewAngle = state.getViewAngle(alpha);
+
+        camera.set(ox, oy, viewAngle, FOV);
+        sprites.clear();
+        for (int idx = 0; idx < state.remoteCount; idx++) {
+            sprites.add(state.getRemoteX(idx, alpha), state.getRemoteY(idx, alpha));
         }
+        hud.setWeaponFrame(state.fireFrame);
+        hud.setStatus(clientId, ox, oy, viewAngle, state.pendingInputs);
+        target.ensureSize(screenW, screenH);
+        raycaster.render(camera, map.compiled(), textures, target);
+        // walls, sprites and HUD are all in the framebuffer: one blit per frame
+        g.drawImage(target.getImage(), 0, 0, null);
     }
 
     @Override public void keyPressed(java.awt.event.KeyEvent e) {
-        switch (e.getKeyCode()) {
-           case KeyEvent.VK_W -> local.keySet.add("w");
-           case KeyEvent.VK_A -> local.keySet.add("a");
-           case KeyEvent.VK_S -> local.keySet.add("s");
-           case KeyEvent.VK_D -> local.keySet.add("d");
-        }
+        heldActions.press(e.getKeyCode());
     }
     @Override public void keyReleased(java.awt.event.KeyEvent e) {
-        switch (e.getKeyCode()) {
-           case KeyEvent.VK_W -> local.keySet.remove("w");
-           case KeyEvent.VK_A -> local.keySet.remove("a");
-           case KeyEvent.VK_S -> local.keySet.remove("s");
-           case KeyEvent.VK_D -> local.keySet.remove("d");
-        }
+        heldActions.release(e.getKeyCode());
     }
     @Override public void mouseClicked(java.awt.event.MouseEvent e) {
-        if (!isShooting) {
-            this.isShooting = true;
-            this.currentFireFrame = 0;
-            this.frameTimer = 0;
-        }
+        inputEvents.add(new InputEvent(InputEvent.Type.MOUSE_CLICKED, e.getButton()));
     }
 
     @Override public void mouseMoved(int e) {
-        local.mouseDelta = e * MOUSE_SENSITIVITY;
-        local.mouseUpdated = true;
+        mouseDx.addAndGet(e);
     }
 }
@@ -1,15 +1,39 @@
 package jangalang.client;
 
 import jangalang.common.ApplicationProperties;
+import jangalang.client.net.ClientTransport;
+import jangalang.client.net.LoopbackClientTransport;
+import jangalang.client.net.SocketClientTransport;
 import jangalang.client.ui.Window;
+import jangalang.server.GameServer;
+import jangalang.server.LoopbackServerTransport;
+import jangalang.server.ServerMain;
 
 public class ClientMain {
+    // server.host values that host the server in this JVM instead of connecting to one
+    private static final String LOCAL_HOST = "local";   // single-player, loopback only
+    private static final String LISTEN_HOST = "listen"; // loopback for us, TCP/UDP for everyone else
+
     public static void main(String[] args) throws Exception {
         String host = ApplicationProperties.get("server.host");
         int tcpPort = ApplicationProperties.getInt("server.tcp");
 
         ResourceLoader.load();
-        NetworkClient network = new NetworkClient(host, tcpPort);
+        ClientTransport transport;
+        if (LOCAL_HOST.equals(host) || LISTEN_HOST.equals(host)) {
+            GameServer server = ServerMain.createServer();
+            LoopbackServerTransport loopback = new LoopbackServerTransport();
+            server.addTransport(loopback);
+            if (LISTEN_HOST.equals(host)) {
+                ServerMain.listen(server, tcpPort, ApplicationProperties.getInt("server.udp"));
+            }
+            server.start();
+            transport = new LoopbackClientTransport(loopback);
+        } else {
+            transport = new SocketClientTransport(host, tcpPort);
+        }
+
+        NetworkClient network = new NetworkClient(transport);
         ClientGame game = new ClientGame(network);
         // Window + renderer use the client-side GameMode (PlayingState adapted)
         Window window = new Window(game);
@@ -1,126 +1,89 @@
 package jangalang.client;
 
+import jangalang.client.net.ClientTransport;
+import jangalang.client.net.SocketClientTransport;
 import jangalang.common.maps.MapData;
-import jangalang.common.net.messages.Disconnect;
-import jangalang.common.net.messages.HandshakeRequest;
+import jangalang.common.maps.MapLayout;
 import jangalang.common.net.messages.HandshakeResponse;
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.MapChunk;
 import jangalang.common.net.messages.StateSnapshot;
 import jangalang.common.net.messages.InputPacket;
 
-import java.net.*;
-import java.io.*;
-import java.util.concurrent.*;
-import java.util.function.Consumer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Handles TCP handshake (map download) and a UDP socket for frequent packets.
+ * Handles the handshake, later map changes and streamed map chunks, and the frequent input/snapshot traffic over a
+ * ClientTransport: sockets for a remote server, or an in-process loopback.
  */
 public class NetworkClient {
-    private final String serverHost;
-    private final int serverTcpPort;
-
-    private Socket tcpSocket;
-    private ObjectInputStream ois;
-    private ObjectOutputStream oos;
-
-    private DatagramSocket udpSocket;
-    private InetAddress serverAddr;
-    private int serverUdpPort;
+    private final ClientTransport transport;
 
     private int assignedId = -1;
 
-    private final ExecutorService udpReceiver = Executors.newSingleThreadExecutor();
-
-    // callback when state snapshot arrives
-    private Consumer<StateSnapshot> onSnapshot;
+    // newest snapshot not yet taken by the game thread; later arrivals replace it
+    private final AtomicReference<StateSnapshot> latestSnapshot = new AtomicReference<>();
+    // sequence of the newest snapshot accepted, only touched by the transport's receive thread
+    private long newestSequence = -1;
 
     private MapData map;
+    private int round;
+    private int streamedWalls;
+    private MapLayout layout;
+    // map changes and chunks not yet taken by the game thread, in the order they arrived
+    private final Queue<Object> mapUpdates = new ConcurrentLinkedQueue<>();
 
     public NetworkClient(String host, int tcpPort) throws Exception {
-        this.serverHost = host; this.serverTcpPort = tcpPort;
-        connectTcp();
+        this(new SocketClientTransport(host, tcpPort));
     }
 
-    private void connectTcp() throws Exception {
-        tcpSocket = new Socket(serverHost, serverTcpPort);
-        oos = new ObjectOutputStream(tcpSocket.getOutputStream());
-        ois = new ObjectInputStream(tcpSocket.getInputStream());
-        // prepare UDP socket and include its port in handshake
-        udpSocket = new DatagramSocket(0); // ephemeral UDP port
-        serverAddr = tcpSocket.getInetAddress();
+    public NetworkClient(ClientTransport transport) throws Exception {
+        this.transport = transport;
+        transport.setSnapshotReceiver(this::receiveSnapshot);
+        transport.setMapChangeReceiver(mapUpdates::add);
+        transport.setMapChunkReceiver(mapUpdates::add);
 
-        HandshakeRequest req = new HandshakeRequest(udpSocket.getLocalPort());
-        oos.writeObject(req);
-        oos.flush();
-
-        Object resp = ois.readObject();
-        if (!(resp instanceof HandshakeResponse)) {
-            throw new IllegalStateException("Expected HandshakeResponse");
-        }
-        HandshakeResponse r = (HandshakeResponse) resp;
+        HandshakeResponse r = transport.handshake();
         this.assignedId = r.assignedId;
-        this.serverUdpPort = r.serverUdpPort;
         this.map = r.map;
-        System.out.println(this.map.toString());
-        System.out.printf("Handshake complete: id=%d serverUdp=%d mapLoaded%n", assignedId, serverUdpPort);
-        // start UDP receive loop
-        udpReceiver.submit(this::udpLoop);
+        this.round = r.round;
+        this.streamedWalls = r.streamedWalls;
+        this.layout = r.layout;
+        System.out.printf("Handshake complete: id=%d serverUdp=%d, map %s: %d walls, %d spawns, %d walls to stream%n",
+                          assignedId, r.serverUdpPort, r.mapName, map.getWallCount(), map.getSpawns().size(), streamedWalls);
     }
 
     public int getAssignedId() { return assignedId; }
+    /** The map from the handshake; without walls when they are streamed after it. */
     public MapData getMap() { return map; }
-    public DatagramSocket getUdpSocket() { return udpSocket; }
-    public InetAddress getServerAddress() { return serverAddr; }
-    public int getServerUdpPort() { return serverUdpPort; }
-
-    public void setOnSnapshot(Consumer<StateSnapshot> cb) { this.onSnapshot = cb; }
-
-    private void udpLoop() {
-        byte[] buf = new byte[65536];
-        DatagramPacket p = new DatagramPacket(buf, buf.length);
-        while (!udpSocket.isClosed()) {
-            try {
-                udpSocket.receive(p);
-                ByteArrayInputStream bais = new ByteArrayInputStream(p.getData(), 0, p.getLength());
-                ObjectInputStream ois = new ObjectInputStream(bais);
-                Object o = ois.readObject();
-                if (o instanceof StateSnapshot) {
-                    if (onSnapshot != null) onSnapshot.accept((StateSnapshot) o);
-                }
-            } catch (SocketException se) {
-                break;
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public int getRound() { return round; }
+    /** Walls the server streams after the handshake, or 0 if {@link #getMap()} is complete. */
+    public int getStreamedWalls() { return streamedWalls; }
+    /** Shape of the PVS and lightmap streamed with the walls, or null if {@link #getMap()} is complete. */
+    public MapLayout getLayout() { return layout; }
+
+    /** Take the newest unprocessed snapshot, or null if nothing new arrived since the last call. */
+    public StateSnapshot pollSnapshot() { return latestSnapshot.getAndSet(null); }
+
+    /** Take the oldest unprocessed {@link MapChange} or {@link MapChunk}, or null if there is none. */
+    public Object pollMapUpdate() { return mapUpdates.poll(); }
+
+    private void receiveSnapshot(StateSnapshot snap) {
+        // anything not newer than what we already have is stale
+        if (snap.sequence > newestSequence) {
+            newestSequence = snap.sequence;
+            snap.receivedNanos = System.nanoTime();
+            latestSnapshot.set(snap);
         }
     }
 
     public void sendInput(InputPacket input) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream oos2 = new ObjectOutputStream(baos);
-            oos2.writeObject(input);
-            oos2.flush();
-            byte[] data = baos.toByteArray();
-            DatagramPacket dp = new DatagramPacket(data, data.length, serverAddr, serverUdpPort);
-            udpSocket.send(dp);
-        } catch (Exception e) { e.printStackTrace(); }
+        transport.sendInput(input);
     }
 
     public void disconnect() {
-        try {
-            if (oos != null) {
-                oos.writeObject(new Disconnect(assignedId));
-                oos.flush();
-            }
-        } catch (Exception ignored) {}
-
-        try {
-            udpSocket.close();
-        } catch (Exception ignored) {}
-
-        try {
-            tcpSocket.close();
-        } catch (Exception ignored) {}
+        transport.close(assignedId);
     }
 }
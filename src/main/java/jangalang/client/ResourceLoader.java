@@ -1,13 +1,16 @@
 package jangalang.client;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
+import jangalang.client.render.Texture;
+import jangalang.client.render.TextureStore;
 import jangalang.common.maps.MapData;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import javax.imageio.ImageIO;
 
 public class ResourceLoader {
     public static ArrayList<BufferedImage> wallTextures;
@@ -15,26 +18,42 @@ public class ResourceLoader {
     public static ArrayList<BufferedImage> weaponSprites;
     public static ArrayList<BufferedImage> splashScreens;
     public static ArrayList<MapData> maps;
+    // every wall and floor texture, mipmapped, in one atlas; material ids index the lists above
+    public static TextureStore textures;
 
     public static void load() {
         try {
             String locManifest = new String(ResourceLoader.class.getResourceAsStream("/manifest.txt").readAllBytes());
             HashMap<String, String> locs = parseLocations(locManifest);
 
-            wallTextures = loadImageResource(loadManifest(locs.get("walls")));
-            floorTextures = loadImageResource(loadManifest(locs.get("floors")));
-            weaponSprites = loadImageResource(loadManifest(locs.get("weapon")));
-            splashScreens = loadImageResource(loadManifest(locs.get("splash")));
+            String[] walls = loadManifest(locs.get("walls"));
+            String[] floors = loadManifest(locs.get("floors"));
+            String[] weapon = loadManifest(locs.get("weapon"));
+            String[] splash = loadManifest(locs.get("splash"));
+
+            // every image in one pack, decoded (in parallel) only when the pack is missing or stale
+            ArrayList<String> paths = new ArrayList<>();
+            for (String[] group : new String[][] { walls, floors, weapon, splash }) {
+                paths.addAll(Arrays.asList(group));
+            }
+            List<BufferedImage> images = AssetPack.load(paths);
+            int at = 0;
+            wallTextures = new ArrayList<>(images.subList(at, at += walls.length));
+            floorTextures = new ArrayList<>(images.subList(at, at += floors.length));
+            weaponSprites = new ArrayList<>(images.subList(at, at += weapon.length));
+            splashScreens = new ArrayList<>(images.subList(at, at += splash.length));
+
+            textures = new TextureStore(texels(wallTextures), texels(floorTextures));
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private static ArrayList<BufferedImage> loadImageResource(String[] paths) throws IOException {
-        ArrayList<BufferedImage> result = new ArrayList<>();
-        for (String path : paths) {
-            result.add(ImageIO.read(ResourceLoader.class.getResourceAsStream(path)));
+    private static ArrayList<Texture> texels(ArrayList<BufferedImage> images) {
+        ArrayList<Texture> result = new ArrayList<>();
+        for (BufferedImage image : images) {
+            result.add(Texture.of(image));
         }
         return result;
     }
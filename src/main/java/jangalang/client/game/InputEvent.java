@@ -0,0 +1,18 @@
+package jangalang.client.game;
+
+/**
+ * A UI input event queued by the EDT for the client simulation thread.
+ */
+public final class InputEvent {
+    public enum Type {
+        MOUSE_CLICKED
+    }
+
+    public final Type type;
+    public final int value; // mouse button
+
+    public InputEvent(Type type, int value) {
+        this.type = type;
+        this.value = value;
+    }
+}
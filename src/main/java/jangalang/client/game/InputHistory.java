@@ -0,0 +1,66 @@
+package jangalang.client.game;
+
+/**
+ * Unacknowledged local inputs for reconciliation, stored as primitives in a ring buffer indexed by
+ * {@code tick & MASK} together with the position they were predicted to produce. Ticks must be
+ * added in increasing order without gaps.
+ */
+public class InputHistory {
+    private static final int CAPACITY = 1024; // must be a power of two
+    private static final int MASK = CAPACITY - 1;
+
+    private final int[] actions = new int[CAPACITY];
+    private final double[] viewAngles = new double[CAPACITY];
+    private final double[] predictedX = new double[CAPACITY];
+    private final double[] predictedY = new double[CAPACITY];
+
+    // pending inputs are the ticks in [oldestTick, newestTick]
+    private long oldestTick = 1;
+    private long newestTick = 0;
+
+    public void add(long tick, int actions, double viewAngle, double resultX, double resultY) {
+        int i = (int) (tick & MASK);
+        this.actions[i] = actions;
+        viewAngles[i] = viewAngle;
+        predictedX[i] = resultX;
+        predictedY[i] = resultY;
+        newestTick = tick;
+        // overwrite the oldest entry rather than grow when the server falls far behind
+        if (newestTick - oldestTick >= CAPACITY) {
+            oldestTick = newestTick - CAPACITY + 1;
+        }
+    }
+
+    /**
+     * Distance between the position predicted after {@code tick} and the given authoritative one,
+     * or infinity if that tick is no longer (or not yet) recorded.
+     */
+    public double predictionError(long tick, double x, double y) {
+        if (tick < 1 || tick > newestTick || newestTick - tick >= CAPACITY) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int i = (int) (tick & MASK);
+        return Math.hypot(x - predictedX[i], y - predictedY[i]);
+    }
+
+    /** Drop every input up to and including {@code ackTick}. */
+    public void acknowledge(long ackTick) {
+        if (ackTick >= oldestTick) {
+            oldestTick = Math.min(ackTick, newestTick) + 1;
+        }
+    }
+
+    /** Re-apply all pending inputs, oldest first, refreshing their predicted results. */
+    public void replay(PredictedPlayer player) {
+        for (long tick = oldestTick; tick <= newestTick; ++tick) {
+            int i = (int) (tick & MASK);
+            player.applyInput(actions[i], viewAngles[i]);
+            predictedX[i] = player.getXCoord();
+            predictedY[i] = player.getYCoord();
+        }
+    }
+
+    public int size() {
+        return (int) (newestTick - oldestTick + 1);
+    }
+}
@@ -1,79 +1,68 @@
 package jangalang.client.game;
 
-import java.util.HashSet;
-
+import jangalang.common.Movement;
+import jangalang.common.maps.CompiledMap;
 import jangalang.common.net.messages.InputPacket;
 
 public class PredictedPlayer {
-    private double xCoord = 0;
-    private double yCoord = 0;
-    private double velX = 0;
-    private double velY = 0;
+    private CompiledMap map;
+    private final double[] state = new double[Movement.STATE_SIZE];
     private double viewAngle = 0;
-    private static final double ACCEL = 0.01;
-    private static final double MAX_SPEED = 0.3;
-    private static final double FRICTION = 0.9;
-    public HashSet<String> keySet = new HashSet<String>();
-    public double mouseDelta = 0;
-    public boolean mouseUpdated = false;
+
+    // state at the previous simulation tick, used for render interpolation
+    private double prevXCoord = 0;
+    private double prevYCoord = 0;
+    private double prevViewAngle = 0;
+
+    public PredictedPlayer(CompiledMap map) {
+        this.map = map;
+    }
+
+    public void setMap(CompiledMap map) {
+        this.map = map;
+    }
 
     public void applyInput(InputPacket ip) {
-        double dirX = 0;
-        double dirY = 0;
-        double fx = Math.cos(ip.viewAngle);
-        double fy = Math.sin(ip.viewAngle);
-        if (ip.forward) {
-            dirX += fx;
-            dirY += fy;
-        }
-        if (ip.backward) {
-            dirX -= fx;
-            dirY -= fy;
-        }
-        if (ip.left) {
-            dirX += fy;
-            dirY -= fx;
-        }
-        if (ip.right) {
-            dirX -= fy;
-            dirY += fx;
-        }
-        boolean acc = (dirX != 0 || dirY != 0);
-        if (acc) {
-            double len = Math.hypot(dirX, dirY);
-            dirX /= len;
-            dirY /= len;
-            velX += dirX * ACCEL;
-            velY += dirY * ACCEL;
-
-            double speed = Math.hypot(velX, velY);
-            if (speed > MAX_SPEED) {
-                velX = (velX / speed) * MAX_SPEED;
-                velY = (velY / speed) * MAX_SPEED;
-            }
-        } else {
-            velX *= FRICTION;
-            velY *= FRICTION;
-        }
-        xCoord += velX;
-        yCoord += velY;
-        viewAngle = ip.viewAngle;
+        applyInput(ip.actions, ip.viewAngle);
+    }
+
+    public void applyInput(int actions, double viewAngle) {
+        Movement.step(state, actions, viewAngle, map);
+        this.viewAngle = viewAngle;
+    }
+
+    public void storePrevious() {
+        this.prevXCoord = getXCoord();
+        this.prevYCoord = getYCoord();
+        this.prevViewAngle = this.viewAngle;
+    }
+
+    public double getPrevXCoord() {
+        return this.prevXCoord;
+    }
+
+    public double getPrevYCoord() {
+        return this.prevYCoord;
+    }
+
+    public double getPrevViewAngle() {
+        return this.prevViewAngle;
     }
 
     public double getXCoord() {
-        return this.xCoord;
+        return this.state[Movement.X];
     }
 
     public double getYCoord() {
-        return this.yCoord;
+        return this.state[Movement.Y];
     }
 
     public double getVelX() {
-        return this.velX;
+        return this.state[Movement.VEL_X];
     }
 
     public double getVelY() {
-        return this.velY;
+        return this.state[Movement.VEL_Y];
     }
 
     public double getViewAngle() {
@@ -81,19 +70,19 @@ public class PredictedPlayer {
     }
 
     public void setXCoord(double xCoord) {
-        this.xCoord = xCoord;
+        this.state[Movement.X] = xCoord;
     }
 
     public void setYCoord(double yCoord) {
-        this.yCoord = yCoord;
+        this.state[Movement.Y] = yCoord;
     }
 
     public void setVelX(double velX) {
-        this.velX = velX;
+        this.state[Movement.VEL_X] = velX;
     }
 
     public void setVelY(double velY) {
-        this.velY = velY;
+        this.state[Movement.VEL_Y] = velY;
     }
 
     public void setViewAngle(double viewAngle) {
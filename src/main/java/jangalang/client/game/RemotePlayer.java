@@ -2,22 +2,50 @@ package jangalang.client.game;
 
 import jangalang.common.PlayerState;
 
+/**
+ * Another player as seen by this client. Server states are kept in a small ring buffer keyed by
+ * server time and played back a little in the past, so movement is smooth regardless of frame rate.
+ * Owned by the client simulation thread; not thread-safe.
+ */
 public class RemotePlayer {
-    private final int id;
-    private volatile double xCoord;
-    private volatile double yCoord;
-    private volatile double velX;
-    private volatile double velY;
-    private volatile double viewAngle;
-
-    // interpolation target
-    private volatile double targetXCoord;
-    private volatile double targetYCoord;
-    private volatile double targetVelX;
-    private volatile double targetVelY;
-    private volatile double targetViewAngle;
+    private static final int BUFFER_SIZE = 32; // must be a power of two
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    // playback delay bounds and how much measured jitter widens it
+    private static final double MIN_DELAY_MS = 30.0;
+    private static final double MAX_DELAY_MS = 250.0;
+    private static final double JITTER_MARGIN = 2.0;
+    // how far past the newest state we are willing to guess before freezing
+    private static final double MAX_EXTRAPOLATION_MS = 100.0;
+    // smoothing factor for the clock offset / jitter / interval estimates
+    private static final double EWMA = 0.1;
 
-    private final Object lock = new Object();
+    private final int id;
+    private double xCoord;
+    private double yCoord;
+    private double velX;
+    private double velY;
+    private double viewAngle;
+
+    // state at the previous simulation tick, used for render interpolation
+    private double prevXCoord;
+    private double prevYCoord;
+
+    // timestamped server states, oldest at (head - count)
+    private final double[] times = new double[BUFFER_SIZE];
+    private final double[] xs = new double[BUFFER_SIZE];
+    private final double[] ys = new double[BUFFER_SIZE];
+    private final double[] velXs = new double[BUFFER_SIZE];
+    private final double[] velYs = new double[BUFFER_SIZE];
+    private final double[] angles = new double[BUFFER_SIZE];
+    private int head = 0;
+    private int count = 0;
+
+    // local clock minus server clock, plus the usual one-way delay
+    private double clockOffset;
+    private double jitter = 0;
+    private double snapshotInterval = 1000.0 / 60.0;
+    private double interpolationDelay = MIN_DELAY_MS;
 
     public RemotePlayer(int id) {
         this.id = id;
@@ -25,114 +53,132 @@ public class RemotePlayer {
         this.velX = this.velY = 0;
     }
 
-    public void receiveServerState(PlayerState ps) {
-        synchronized (lock) {
-            // set target to server values
-            targetXCoord = ps.xCoord;
-            targetYCoord = ps.yCoord;
-            targetVelX = ps.velX;
-            targetVelY = ps.velY;
-            targetViewAngle = ps.viewAngle;
+    /**
+     * Buffer a server state. {@code serverTimeMs} is the snapshot's server timestamp and
+     * {@code localTimeMs} the local clock at arrival, both in milliseconds.
+     */
+    public void receiveServerState(PlayerState ps, double serverTimeMs, double localTimeMs) {
+        double offsetSample = localTimeMs - serverTimeMs;
+        if (count == 0) {
+            clockOffset = offsetSample;
+        } else {
+            double newest = times[(head - 1) & BUFFER_MASK];
+            if (serverTimeMs <= newest) return; // duplicate or out of order
+
+            snapshotInterval += (serverTimeMs - newest - snapshotInterval) * EWMA;
+            jitter += (Math.abs(offsetSample - clockOffset) - jitter) * EWMA;
+            clockOffset += (offsetSample - clockOffset) * EWMA;
         }
-    }
-
-    public void simulate(double dt) {
-        synchronized (lock) {
-            // simple linear interpolation towards target (smooth correction)
-            double blend = Math.min(1.0, dt * 10.0); // correction speed
-            xCoord += (targetXCoord - xCoord) * blend;
-            yCoord += (targetYCoord - yCoord) * blend;
-            velX = targetVelX;
-            velY = targetVelY;
-            viewAngle += (targetViewAngle - viewAngle) * blend;
+        interpolationDelay = Math.max(MIN_DELAY_MS,
+                                      Math.min(MAX_DELAY_MS, snapshotInterval + JITTER_MARGIN * jitter));
+
+        times[head] = serverTimeMs;
+        xs[head] = ps.xCoord;
+        ys[head] = ps.yCoord;
+        velXs[head] = ps.velX;
+        velYs[head] = ps.velY;
+        angles[head] = ps.viewAngle;
+        head = (head + 1) & BUFFER_MASK;
+        if (count < BUFFER_SIZE) count++;
+    }
+
+    /**
+     * Advance one simulation tick: remember the previous position and sample the buffer at
+     * {@code localTimeMs - interpolationDelay}, translated into server time.
+     */
+    public void update(double localTimeMs) {
+        prevXCoord = xCoord;
+        prevYCoord = yCoord;
+        if (count == 0) return;
+
+        double renderTime = localTimeMs - clockOffset - interpolationDelay;
+        int newest = (head - 1) & BUFFER_MASK;
+
+        if (count == 1 || renderTime >= times[newest]) {
+            // ran out of states: extrapolate along the last segment for a bounded time
+            sampleBeyondNewest(newest, renderTime);
+            return;
         }
-    }
-
-    public int getId() {
-        return id;
-    }
-
-    public double getXCoord() {
-        return xCoord;
-    }
-
-    public void setXCoord(double xCoord) {
-        this.xCoord = xCoord;
-    }
-
-    public double getYCoord() {
-        return yCoord;
-    }
-
-    public void setYCoord(double yCoord) {
-        this.yCoord = yCoord;
-    }
-
-    public double getVelX() {
-        return velX;
-    }
-
-    public void setVelX(double velX) {
-        this.velX = velX;
-    }
-
-    public double getVelY() {
-        return velY;
-    }
 
-    public void setVelY(double velY) {
-        this.velY = velY;
-    }
+        int oldest = (head - count) & BUFFER_MASK;
+        if (renderTime <= times[oldest]) {
+            copyFrom(oldest);
+            return;
+        }
 
-    public double getViewAngle() {
-        return viewAngle;
+        // walk back from the newest state to the pair that brackets renderTime
+        int to = newest;
+        int from = (to - 1) & BUFFER_MASK;
+        while (from != oldest && times[from] > renderTime) {
+            to = from;
+            from = (from - 1) & BUFFER_MASK;
+        }
+        double t = (renderTime - times[from]) / (times[to] - times[from]);
+        blend(from, to, t);
     }
 
-    public void setViewAngle(double viewAngle) {
-        this.viewAngle = viewAngle;
+    private void sampleBeyondNewest(int newest, double renderTime) {
+        if (count == 1) {
+            copyFrom(newest);
+            return;
+        }
+        int before = (newest - 1) & BUFFER_MASK;
+        double span = times[newest] - times[before];
+        double ahead = Math.min(renderTime - times[newest], MAX_EXTRAPOLATION_MS);
+        blend(before, newest, 1.0 + ahead / span);
     }
 
-    public double getTargetXCoord() {
-        return targetXCoord;
+    private void copyFrom(int i) {
+        xCoord = xs[i];
+        yCoord = ys[i];
+        velX = velXs[i];
+        velY = velYs[i];
+        viewAngle = angles[i];
     }
 
-    public void setTargetXCoord(double targetXCoord) {
-        this.targetXCoord = targetXCoord;
+    private void blend(int from, int to, double t) {
+        xCoord = xs[from] + (xs[to] - xs[from]) * t;
+        yCoord = ys[from] + (ys[to] - ys[from]) * t;
+        velX = velXs[to];
+        velY = velYs[to];
+        // interpolate the view along the shortest arc
+        double da = Math.IEEEremainder(angles[to] - angles[from], 2 * Math.PI);
+        viewAngle = angles[from] + da * t;
     }
 
-    public double getTargetYCoord() {
-        return targetYCoord;
+    public double getPrevXCoord() {
+        return prevXCoord;
     }
 
-    public void setTargetYCoord(double targetYCoord) {
-        this.targetYCoord = targetYCoord;
+    public double getPrevYCoord() {
+        return prevYCoord;
     }
 
-    public double getTargetVelX() {
-        return targetVelX;
+    public double getInterpolationDelay() {
+        return interpolationDelay;
     }
 
-    public void setTargetVelX(double targetVelX) {
-        this.targetVelX = targetVelX;
+    public int getId() {
+        return id;
     }
 
-    public double getTargetVelY() {
-        return targetVelY;
+    public double getXCoord() {
+        return xCoord;
     }
 
-    public void setTargetVelY(double targetVelY) {
-        this.targetVelY = targetVelY;
+    public double getYCoord() {
+        return yCoord;
     }
 
-    public double getTargetViewAngle() {
-        return targetViewAngle;
+    public double getVelX() {
+        return velX;
     }
 
-    public void setTargetViewAngle(double targetViewAngle) {
-        this.targetViewAngle = targetViewAngle;
+    public double getVelY() {
+        return velY;
     }
 
-    public Object getLock() {
-        return lock;
+    public double getViewAngle() {
+        return viewAngle;
     }
 }
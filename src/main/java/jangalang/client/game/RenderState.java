@@ -0,0 +1,81 @@
+package jangalang.client.game;
+
+/**
+ * Immutable view of the client simulation published once per tick for the renderer. Holds the
+ * previous and current tick so the renderer can interpolate without touching live game state.
+ */
+public final class RenderState {
+    public final long tickNanos; // instant the current state represents
+    public final long clientTick;
+    public final int pendingInputs;
+    public final int fireFrame;
+
+    private final double prevX;
+    private final double prevY;
+    private final double prevViewAngle;
+    private final double x;
+    private final double y;
+    private final double viewAngle;
+
+    // remote players, parallel arrays
+    public final int remoteCount;
+    private final int[] remoteIds;
+    private final double[] remotePrevX;
+    private final double[] remotePrevY;
+    private final double[] remoteX;
+    private final double[] remoteY;
+
+    public RenderState(long tickNanos, long clientTick, int pendingInputs, int fireFrame,
+                       PredictedPlayer local, Iterable<RemotePlayer> remotes, int remoteCount) {
+        this.tickNanos = tickNanos;
+        this.clientTick = clientTick;
+        this.pendingInputs = pendingInputs;
+        this.fireFrame = fireFrame;
+        this.prevX = local.getPrevXCoord();
+        this.prevY = local.getPrevYCoord();
+        this.prevViewAngle = local.getPrevViewAngle();
+        this.x = local.getXCoord();
+        this.y = local.getYCoord();
+        this.viewAngle = local.getViewAngle();
+
+        this.remoteCount = remoteCount;
+        this.remoteIds = new int[remoteCount];
+        this.remotePrevX = new double[remoteCount];
+        this.remotePrevY = new double[remoteCount];
+        this.remoteX = new double[remoteCount];
+        this.remoteY = new double[remoteCount];
+        int i = 0;
+        for (RemotePlayer rp : remotes) {
+            remoteIds[i] = rp.getId();
+            remotePrevX[i] = rp.getPrevXCoord();
+            remotePrevY[i] = rp.getPrevYCoord();
+            remoteX[i] = rp.getXCoord();
+            remoteY[i] = rp.getYCoord();
+            i++;
+        }
+    }
+
+    public double getX(double alpha) {
+        return prevX + (x - prevX) * alpha;
+    }
+
+    public double getY(double alpha) {
+        return prevY + (y - prevY) * alpha;
+    }
+
+    public double getViewAngle(double alpha) {
+        return prevViewAngle + (viewAngle - prevViewAngle) * alpha;
+    }
+
+    public int getRemoteId(int i) {
+        return remoteIds[i];
+    }
+
+    public double getRemoteX(int i, double alpha) {
+        return remotePrevX[i] + (remoteX[i] - remotePrevX[i]) * alpha;
+    }
+
+    public double getRemoteY(int i, double alpha) {
+        return remotePrevY[i] + (remoteY[i] - remotePrevY[i]) * alpha;
+    }
+}
@@ -0,0 +1,27 @@
+package jangalang.client.net;
+
+import jangalang.common.net.messages.HandshakeResponse;
+import jangalang.common.net.messages.InputPacket;
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.MapChunk;
+import jangalang.common.net.messages.StateSnapshot;
+
+import java.util.function.Consumer;
+
+/**
+ * The client's connection to a server, either over the network or in-process.
+ */
+public interface ClientTransport {
+    /** Snapshots are passed to {@code receiver} on the transport's own thread. Set before handshaking. */
+    void setSnapshotReceiver(Consumer<StateSnapshot> receiver);
+    /** Map changes are passed to {@code receiver} on the transport's own thread. Set before handshaking. */
+    void setMapChangeReceiver(Consumer<MapChange> receiver);
+    /**
+     * Streamed map chunks are passed to {@code receiver} on the same thread as map changes, in the
+     * order sent. Set before handshaking.
+     */
+    void setMapChunkReceiver(Consumer<MapChunk> receiver);
+    HandshakeResponse handshake() throws Exception;
+    void sendInput(InputPacket input);
+    void close(int assignedId);
+}
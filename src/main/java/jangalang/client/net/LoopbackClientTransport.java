@@ -0,0 +1,58 @@
+package jangalang.client.net;
+
+import jangalang.common.net.messages.HandshakeResponse;
+import jangalang.common.net.messages.InputPacket;
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.MapChunk;
+import jangalang.common.net.messages.StateSnapshot;
+import jangalang.server.LoopbackServerTransport;
+
+import java.util.function.Consumer;
+
+/**
+ * Client end of an in-process connection to a GameServer hosted in the same JVM.
+ */
+public class LoopbackClientTransport implements ClientTransport {
+    private final LoopbackServerTransport server;
+    private Consumer<StateSnapshot> onSnapshot;
+    private Consumer<MapChange> onMapChange;
+
+    public LoopbackClientTransport(LoopbackServerTransport server) {
+        this.server = server;
+    }
+
+    @Override
+    public void setSnapshotReceiver(Consumer<StateSnapshot> receiver) {
+        this.onSnapshot = receiver;
+    }
+
+    @Override
+    public void setMapChangeReceiver(Consumer<MapChange> receiver) {
+        this.onMapChange = receiver;
+    }
+
+    @Override
+    public void setMapChunkReceiver(Consumer<MapChunk> receiver) {
+        // maps are handed over whole in-process; nothing is streamed
+    }
+
+    @Override
+    public HandshakeResponse handshake() {
+        int id = server.connect(snap -> {
+            if (onSnapshot != null) onSnapshot.accept(snap);
+        }, change -> {
+            if (onMapChange != null) onMapChange.accept(change);
+        });
+        return new HandshakeResponse(id, 0, server.getServer().getMapName(), server.getServer().getMap());
+    }
+
+    @Override
+    public void sendInput(InputPacket input) {
+        server.sendInput(input);
+    }
+
+    @Override
+    public void close(int assignedId) {
+        server.disconnect(assignedId);
+    }
+}
@@ -0,0 +1,154 @@
+package jangalang.client.net;
+
+import jangalang.common.net.messages.Disconnect;
+import jangalang.common.net.messages.HandshakeRequest;
+import jangalang.common.net.messages.HandshakeResponse;
+import jangalang.common.net.messages.InputPacket;
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.MapChunk;
+import jangalang.common.net.messages.StateSnapshot;
+
+import java.net.*;
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * TCP handshake and later reliable messages (map changes and streamed map chunks), and a UDP
+ * socket for frequent packets.
+ */
+public class SocketClientTransport implements ClientTransport {
+    private final String serverHost;
+    private final int serverTcpPort;
+
+    private Socket tcpSocket;
+    private ObjectInputStream ois;
+    private ObjectOutputStream oos;
+
+    private DatagramSocket udpSocket;
+    private InetAddress serverAddr;
+    private int serverUdpPort;
+
+    private final ExecutorService udpReceiver = Executors.newSingleThreadExecutor();
+    private final ExecutorService tcpReceiver = Executors.newSingleThreadExecutor();
+    private Consumer<StateSnapshot> onSnapshot;
+    private Consumer<MapChange> onMapChange;
+    private Consumer<MapChunk> onMapChunk;
+
+    public SocketClientTransport(String host, int tcpPort) {
+        this.serverHost = host;
+        this.serverTcpPort = tcpPort;
+    }
+
+    @Override
+    public void setSnapshotReceiver(Consumer<StateSnapshot> receiver) {
+        this.onSnapshot = receiver;
+    }
+
+    @Override
+    public void setMapChangeReceiver(Consumer<MapChange> receiver) {
+        this.onMapChange = receiver;
+    }
+
+    @Override
+    public void setMapChunkReceiver(Consumer<MapChunk> receiver) {
+        this.onMapChunk = receiver;
+    }
+
+    @Override
+    public HandshakeResponse handshake() throws Exception {
+        tcpSocket = new Socket(serverHost, serverTcpPort);
+        oos = new ObjectOutputStream(tcpSocket.getOutputStream());
+        ois = new ObjectInputStream(tcpSocket.getInputStream());
+        // prepare UDP socket and include its port in handshake
+        udpSocket = new DatagramSocket(0); // ephemeral UDP port
+        serverAddr = tcpSocket.getInetAddress();
+
+        HandshakeRequest req = new HandshakeRequest(udpSocket.getLocalPort());
+        oos.writeObject(req);
+        oos.flush();
+
+        Object resp = ois.readObject();
+        if (!(resp instanceof HandshakeResponse)) {
+            throw new IllegalStateException("Expected HandshakeResponse");
+        }
+        HandshakeResponse r = (HandshakeResponse) resp;
+        this.serverUdpPort = r.serverUdpPort;
+        // start UDP receive loop
+        udpReceiver.submit(this::udpLoop);
+        tcpReceiver.submit(this::tcpLoop);
+        return r;
+    }
+
+    private void tcpLoop() {
+        while (!tcpSocket.isClosed()) {
+            try {
+                Object o = ois.readObject();
+                if (o instanceof MapChange && onMapChange != null) {
+                    onMapChange.accept((MapChange) o);
+                } else if (o instanceof MapChunk && onMapChunk != null) {
+                    onMapChunk.accept((MapChunk) o);
+                }
+            } catch (EOFException | SocketException e) {
+                break;
+            } catch (Exception e) {
+                e.printStackTrace();
+                break;
+            }
+        }
+    }
+
+    private void udpLoop() {
+        byte[] buf = new byte[65536];
+        DatagramPacket p = new DatagramPacket(buf, buf.length);
+        while (!udpSocket.isClosed()) {
+            try {
+                udpSocket.receive(p);
+                ByteArrayInputStream bais = new ByteArrayInputStream(p.getData(), 0, p.getLength());
+                ObjectInputStream ois = new ObjectInputStream(bais);
+                Object o = ois.readObject();
+                if (o instanceof StateSnapshot && onSnapshot != null) {
+                    onSnapshot.accept((StateSnapshot) o);
+                }
+            } catch (SocketException se) {
+                break;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void sendInput(InputPacket input) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos2 = new ObjectOutputStream(baos);
+            oos2.writeObject(input);
+            oos2.flush();
+            byte[] data = baos.toByteArray();
+            DatagramPacket dp = new DatagramPacket(data, data.length, serverAddr, serverUdpPort);
+            udpSocket.send(dp);
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+
+    @Override
+    public void close(int assignedId) {
+        try {
+            if (oos != null) {
+                oos.writeObject(new Disconnect(assignedId));
+                oos.flush();
+            }
+        } catch (Exception ignored) {}
+
+        try {
+            udpSocket.close();
+        } catch (Exception ignored) {}
+
+        try {
+            tcpSocket.close();
+        } catch (Exception ignored) {}
+
+        udpReceiver.shutdownNow();
+        tcpReceiver.shutdownNow();
+    }
+}
@@ -0,0 +1,29 @@
+package jangalang.client.render;
+
+/**
+ * Viewer position plus the unit view direction and the camera plane perpendicular to it.
+ * The ray for screen column x is {@code dir + plane * cameraX} with cameraX in [-1, 1], so the ray
+ * parameter of a hit is already the perpendicular (fish-eye free) distance.
+ */
+public class Camera {
+    public double x;
+    public double y;
+    public double dirX = 1;
+    public double dirY = 0;
+    public double planeX = 0;
+    public double planeY = 0;
+
+    public void set(double x, double y, double viewAngle, double fov) {
+        set(x, y, Math.cos(viewAngle), Math.sin(viewAngle), fov);
+    }
+
+    public void set(double x, double y, double dirX, double dirY, double fov) {
+        double planeScale = Math.tan(fov / 2.0);
+        this.x = x;
+        this.y = y;
+        this.dirX = dirX;
+        this.dirY = dirY;
+        this.planeX = -dirY * planeScale;
+        this.planeY = dirX * planeScale;
+    }
+}
@@ -0,0 +1,111 @@
+package jangalang.client.render;
+
+import java.util.Arrays;
+
+/**
+ * Builds the row-major framebuffer from the column-major wall buffer in square tiles, so both the
+ * column reads and the row writes of a tile stay in cache. Pixels no wall covers are filled with
+ * sky or floor on the spot, which also means floor texels hidden behind walls are never sampled.
+ */
+public class ComposePass implements RenderPass {
+    // a tile's column segments (TILE_W * TILE_H ints) fit in L1 while floor runs stay long
+    private static final int TILE_W = 256;
+    private static final int TILE_H = 16;
+
+    // per floor row: world position at column 0, step per column, light and mip level
+    private double[] rowX = new double[0];
+    private double[] rowY = new double[0];
+    private double[] rowStepX = new double[0];
+    private double[] rowStepY = new double[0];
+    private int[] rowLight = new int[0];
+    private int[] rowLevel = new int[0];
+    private int floorTile;
+
+    @Override
+    public void render(RenderContext ctx) {
+        final int w = ctx.width;
+        final int h = ctx.height;
+        prepareRows(ctx);
+
+        final int[] pixels = ctx.target.getPixels();
+        final int[] columns = ctx.target.getColumns();
+        final int[] wallStart = ctx.target.getWallStart();
+        final int[] wallEnd = ctx.target.getWallEnd();
+        for (int ty = 0; ty < h; ty += TILE_H) {
+            final int yEnd = Math.min(h, ty + TILE_H);
+            for (int tx = 0; tx < w; tx += TILE_W) {
+                final int xEnd = Math.min(w, tx + TILE_W);
+                // rows outside every wall in the tile need no per-pixel coverage test
+                int lo = h;
+                int hi = 0;
+                for (int x = tx; x < xEnd; ++x) {
+                    if (wallStart[x] < wallEnd[x]) {
+                        lo = Math.min(lo, wallStart[x]);
+                        hi = Math.max(hi, wallEnd[x]);
+                    }
+                }
+                for (int y = ty; y < yEnd; ++y) {
+                    int i = y * w + tx;
+                    if (y < lo || y >= hi) {
+                        background(ctx, y, i, tx, xEnd - tx);
+                        continue;
+                    }
+                    int x = tx;
+                    while (x < xEnd) {
+                        if (y >= wallStart[x] && y < wallEnd[x]) {
+                            pixels[i++] = columns[x * h + y];
+                            x++;
+                            continue;
+                        }
+                        // run of background pixels up to the next wall or the tile edge
+                        int run = x + 1;
+                        while (run < xEnd && (y < wallStart[run] || y >= wallEnd[run])) run++;
+                        background(ctx, y, i, x, run - x);
+                        i += run - x;
+                        x = run;
+                    }
+                }
+            }
+        }
+    }
+
+    // sky or floor for count pixels of row y, starting at column x / framebuffer index i
+    private void background(RenderContext ctx, int y, int i, int x, int count) {
+        if (y < ctx.horizon) {
+            Arrays.fill(ctx.target.getPixels(), i, i + count, FloorPass.SKY_COLOR);
+        } else {
+            FloorPass.drawSpan(ctx.target.getPixels(), i, count,
+                               rowX[y] + rowStepX[y] * x, rowY[y] + rowStepY[y] * x,
+                               rowStepX[y], rowStepY[y], rowLight[y],
+                               ctx.textures, floorTile, rowLevel[y], ctx.map.getLightmap());
+        }
+    }
+
+    // same row setup as FloorPass, kept per row so tiles can start at any column
+    private void prepareRows(RenderContext ctx) {
+        final int h = ctx.height;
+        if (rowX.length != h) {
+            rowX = new double[h];
+            rowY = new double[h];
+            rowStepX = new double[h];
+            rowStepY = new double[h];
+            rowLight = new int[h];
+            rowLevel = new int[h];
+        }
+        final Camera cam = ctx.camera;
+        floorTile = ctx.textures.floorTile(ctx.map.getFloorMaterial());
+        final double leftX = cam.dirX - cam.planeX;
+        final double leftY = cam.dirY - cam.planeY;
+        final double spanX = 2 * cam.planeX / ctx.width;
+        final double spanY = 2 * cam.planeY / ctx.width;
+        for (int y = ctx.horizon; y < h; ++y) {
+            final double rowDistance = 0.5 * ctx.focal / (y - ctx.horizon + 0.5);
+            rowX[y] = cam.x + leftX * rowDistance;
+            rowY[y] = cam.y + leftY * rowDistance;
+            rowStepX[y] = spanX * rowDistance;
+            rowStepY[y] = spanY * rowDistance;
+            rowLight[y] = Shading.light(rowDistance, ctx.viewDistance);
+            rowLevel[y] = FloorPass.floorLevel(rowDistance, ctx.focal);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package jangalang.client.render;
+
+import java.util.Arrays;
+
+import jangalang.common.maps.Lightmap;
+
+/**
+ * Fills the upper half with the sky colour and casts the floor row by row. Each row below the
+ * horizon is a fixed distance away, so one texture step is computed per row and walked across.
+ */
+public class FloorPass implements RenderPass {
+    static final int SKY_COLOR = (105 << 16) | (12 << 8) | 15;
+
+    @Override
+    public void render(RenderContext ctx) {
+        final int[] pixels = ctx.target.getPixels();
+        final int w = ctx.width;
+        final int h = ctx.height;
+        final int horizon = ctx.horizon;
+        Arrays.fill(pixels, 0, horizon * w, SKY_COLOR);
+
+        final Camera cam = ctx.camera;
+        final TextureStore store = ctx.textures;
+        final int tile = store.floorTile(ctx.map.getFloorMaterial());
+
+        // rays through the left and right screen edges
+        final double leftX = cam.dirX - cam.planeX;
+        final double leftY = cam.dirY - cam.planeY;
+        final double spanX = 2 * cam.planeX / w;
+        final double spanY = 2 * cam.planeY / w;
+
+        for (int y = horizon; y < h; ++y) {
+            // eye is half a wall above the floor; sample through the pixel centre
+            final double rowDistance = 0.5 * ctx.focal / (y - horizon + 0.5);
+            drawSpan(pixels, y * w, w,
+                     cam.x + leftX * rowDistance, cam.y + leftY * rowDistance,
+                     spanX * rowDistance, spanY * rowDistance,
+                     Shading.light(rowDistance, ctx.viewDistance), store, tile, floorLevel(rowDistance, ctx.focal),
+                     ctx.map.getLightmap());
+        }
+    }
+
+    // adjacent pixels of a row are rowDistance / focal world units apart
+    static int floorLevel(double rowDistance, double focal) {
+        return TextureStore.levelFor(rowDistance / focal * TextureStore.TILE_SIZE);
+    }
+
+    /**
+     * Sample {@code count} floor texels of atlas tile {@code tile} at mip {@code level} into
+     * {@code dst} from {@code i}, starting at world point (wx, wy) and moving (dx, dy) per pixel,
+     * lit by {@code fog} and the lightmap, if any. Texture coordinates are 16.16 fixed point, so the
+     * loop has no floor(); with a lightmap they are kept absolute, relative to its origin, so the
+     * integer part is the light cell (one texture repeat per cell).
+     */
+    static void drawSpan(int[] dst, int i, int count, double wx, double wy, double dx, double dy, int fog,
+                         TextureStore store, int tile, int level, Lightmap lightmap) {
+        final int log2 = TextureStore.TILE_LOG2 - level;
+        final int[] texels = store.level(level);
+        final int base = tile << (2 * log2);
+        final int end = i + count;
+
+        if (lightmap == null) {
+            final int scale = 1 << (log2 + 16);
+            final int mask = scale - 1;
+            int u = (int) ((wx - Math.floor(wx)) * scale);
+            int v = (int) ((wy - Math.floor(wy)) * scale);
+            // whole texture repeats per step don't change the sample
+            final int du = (int) ((dx - Math.rint(dx)) * scale);
+            final int dv = (int) ((dy - Math.rint(dy)) * scale);
+            for (; i < end; ++i) {
+                dst[i] = Shading.shade(texels[base + ((v >>> 16) << log2) + (u >>> 16)], fog);
+                u = (u + du) & mask;
+                v = (v + dv) & mask;
+            }
+            return;
+        }
+
+        final byte[] cells = lightmap.getFloorLight();
+        final int cols = lightmap.getFloorCols();
+        final int rows = lightmap.getFloorRows();
+        final int outside = Shading.combine(fog, lightmap.getOutside());
+        final double scale = 1 << (log2 + 16);
+        final int cellShift = log2 + 16;
+        final int texMask = (1 << log2) - 1;
+        long u = (long) ((wx - lightmap.getFloorX()) * scale);
+        long v = (long) ((wy - lightmap.getFloorY()) * scale);
+        final long du = (long) (dx * scale);
+        final long dv = (long) (dy * scale);
+        for (; i < end; ++i) {
+            final int cx = (int) (u >> cellShift);
+            final int cy = (int) (v >> cellShift);
+            final int light = cx >= 0 && cy >= 0 && cx < cols && cy < rows
+                ? Shading.combine(fog, cells[cy * cols + cx] & 0xFF)
+                : outside;
+            final int tu = (int) (u >> 16) & texMask;
+            final int tv = (int) (v >> 16) & texMask;
+            dst[i] = Shading.shade(texels[base + (tv << log2) + tu], light);
+            u += du;
+            v += dv;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package jangalang.client.render;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * A printable-ASCII glyph cache for one font: every character is rasterised once into an 8-bit
+ * coverage mask, and strings are drawn by blending those masks straight into the framebuffer, so
+ * text costs no Java2D calls after construction. Characters outside the cache draw as '?'.
+ */
+final class Glyphs {
+    private static final char FIRST = 32;
+    private static final char LAST = 126;
+
+    private final byte[][] masks = new byte[LAST - FIRST + 1][];
+    private final int[] advances = new int[LAST - FIRST + 1];
+    private final int ascent;
+    private final int height;
+
+    Glyphs(Font font) {
+        Graphics2D probe = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).createGraphics();
+        FontMetrics fm = probe.getFontMetrics(font);
+        probe.dispose();
+        this.ascent = fm.getAscent();
+        this.height = fm.getAscent() + fm.getDescent();
+
+        for (char c = FIRST; c <= LAST; ++c) {
+            final int advance = Math.max(1, fm.charWidth(c));
+            BufferedImage glyph = new BufferedImage(advance, height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = glyph.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(Color.WHITE);
+            g.drawString(String.valueOf(c), 0, ascent);
+            g.dispose();
+            byte[] mask = new byte[advance * height];
+            glyph.getRaster().getDataElements(0, 0, advance, height, mask);
+            masks[c - FIRST] = mask;
+            advances[c - FIRST] = advance;
+        }
+    }
+
+    /** Draw text with its baseline at y; returns the x after the last glyph. */
+    int draw(int[] pixels, int width, int height, CharSequence text, int x, int y, int rgb) {
+        final int top = y - ascent;
+        for (int k = 0; k < text.length(); ++k) {
+            char c = text.charAt(k);
+            int g = (c < FIRST || c > LAST ? '?' : c) - FIRST;
+            final byte[] mask = masks[g];
+            final int gw = advances[g];
+            final int y0 = Math.max(0, top);
+            final int y1 = Math.min(height, top + this.height);
+            final int x0 = Math.max(0, x);
+            final int x1 = Math.min(width, x + gw);
+            for (int py = y0; py < y1; ++py) {
+                int m = (py - top) * gw + (x0 - x);
+                int i = py * width + x0;
+                for (int px = x0; px < x1; ++px, ++m, ++i) {
+                    final int a = mask[m] & 0xFF;
+                    if (a != 0) pixels[i] = HudPass.blend(rgb, pixels[i], a);
+                }
+            }
+            x += gw;
+        }
+        return x;
+    }
+
+    int lineHeight() {
+        return height;
+    }
+}
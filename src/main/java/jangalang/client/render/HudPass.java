@@ -0,0 +1,117 @@
+package jangalang.client.render;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * The last pass of the client frame: composites the weapon and the status line into the software
+ * framebuffer, so the frame reaches the screen in one blit. Weapon frames are scaled once per
+ * resolution and alpha-blended from int[] texels; the status text is only reformatted when a shown
+ * value changes and is drawn from a glyph cache.
+ */
+public class HudPass implements RenderPass {
+    // weapon height as a fraction of the screen height
+    private static final double WEAPON_SCALE = 0.4;
+    private static final int TEXT_COLOR = 0xFFFFFF;
+    private static final Glyphs GLYPHS = new Glyphs(new Font(Font.DIALOG, Font.PLAIN, 12));
+
+    private final List<BufferedImage> weaponFrames;
+    private Texture[] scaled;
+    private int scaledHeight = -1;
+    private int frame = 0;
+
+    // last shown values, in display units (hundredths), and the text made from them
+    private int clientId = -1;
+    private long shownX = Long.MIN_VALUE;
+    private long shownY;
+    private long shownAngle;
+    private int shownPending;
+    private String status = "";
+
+    public HudPass(List<BufferedImage> weaponFrames) {
+        this.weaponFrames = weaponFrames;
+    }
+
+    public void setWeaponFrame(int frame) {
+        this.frame = frame;
+    }
+
+    public void setStatus(int clientId, double x, double y, double viewAngle, int pending) {
+        long sx = Math.round(x * 100);
+        long sy = Math.round(y * 100);
+        long sa = Math.round(viewAngle * 100);
+        if (clientId == this.clientId && sx == shownX && sy == shownY && sa == shownAngle && pending == shownPending) {
+            return;
+        }
+        this.clientId = clientId;
+        shownX = sx;
+        shownY = sy;
+        shownAngle = sa;
+        shownPending = pending;
+        status = String.format("Client %d  Local: (%.2f, %.2f), va=%.2f pending=%d", clientId, x, y, viewAngle, pending);
+    }
+
+    @Override
+    public void render(RenderContext ctx) {
+        final int[] pixels = ctx.target.getPixels();
+        final int w = ctx.width;
+        final int h = ctx.height;
+
+        if (!weaponFrames.isEmpty()) {
+            if (scaledHeight != h) rescale(h);
+            Texture weapon = scaled[Math.min(frame, scaled.length - 1)];
+            // bottom-right, half a weapon width in from the edge
+            int wx = Math.max(0, w - (int) (weapon.width * 1.5));
+            int wy = Math.max(0, h - weapon.height);
+            blit(pixels, w, h, weapon, wx, wy);
+        }
+
+        GLYPHS.draw(pixels, w, h, status, 10, 20, TEXT_COLOR);
+    }
+
+    private void rescale(int screenHeight) {
+        scaled = new Texture[weaponFrames.size()];
+        final int th = Math.max(1, (int) (screenHeight * WEAPON_SCALE));
+        for (int i = 0; i < scaled.length; ++i) {
+            BufferedImage src = weaponFrames.get(i);
+            int tw = Math.max(1, src.getWidth() * th / src.getHeight());
+            BufferedImage dst = new BufferedImage(tw, th, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = dst.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(src, 0, 0, tw, th, null);
+            g.dispose();
+            scaled[i] = new Texture(dst.getRGB(0, 0, tw, th, null, 0, tw), tw, th);
+        }
+        scaledHeight = screenHeight;
+    }
+
+    private static void blit(int[] pixels, int w, int h, Texture tex, int x, int y) {
+        final int[] texels = tex.pixels;
+        final int x1 = Math.min(w, x + tex.width);
+        final int y1 = Math.min(h, y + tex.height);
+        for (int py = y; py < y1; ++py) {
+            int t = (py - y) * tex.width;
+            int i = py * w + x;
+            for (int px = x; px < x1; ++px, ++t, ++i) {
+                final int texel = texels[t];
+                final int a = texel >>> 24;
+                if (a == 0xFF) {
+                    pixels[i] = texel;
+                } else if (a != 0) {
+                    pixels[i] = blend(texel, pixels[i], a);
+                }
+            }
+        }
+    }
+
+    // src over dst with coverage a (0..255), two channels per multiply
+    static int blend(int src, int dst, int a) {
+        final int na = 255 - a;
+        final int rb = ((src & 0xFF00FF) * a + (dst & 0xFF00FF) * na) >>> 8;
+        final int g = ((src & 0x00FF00) * a + (dst & 0x00FF00) * na) >>> 8;
+        return (rb & 0xFF00FF) | (g & 0x00FF00);
+    }
+}
@@ -0,0 +1,81 @@
+package jangalang.client.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jangalang.common.ApplicationProperties;
+import jangalang.common.maps.CompiledMap;
+
+/**
+ * The software renderer shared by every game mode: runs a pipeline of passes into an int[]
+ * framebuffer. All passes agree on one projection: walls are one unit tall, the eye sits half a
+ * unit above the floor, and a unit at distance d is {@code focal / d} pixels tall, where focal is
+ * derived from the horizontal field of view.
+ */
+public class Raycaster {
+    private final List<RenderPass> passes = new ArrayList<>();
+    private final RenderContext ctx = new RenderContext();
+    private final double viewDistance;
+    private final boolean columnMajor;
+
+    public Raycaster(double viewDistance) {
+        this(viewDistance, false);
+    }
+
+    /**
+     * @param columnMajor draw walls into the target's column buffer; the pipeline must then end
+     *                    the opaque geometry with a {@link ComposePass}
+     */
+    public Raycaster(double viewDistance, boolean columnMajor) {
+        this.viewDistance = viewDistance;
+        this.columnMajor = columnMajor;
+    }
+
+    /**
+     * The standard pipeline: walls into the column buffer, then floor and transpose in one
+     * {@link ComposePass}. {@code render.walls=ray} selects per-column ray casting for walls.
+     */
+    public static Raycaster standard(double viewDistance) {
+        boolean rays = "ray".equals(ApplicationProperties.getOrDefault("render.walls", "span"));
+        return new Raycaster(viewDistance, true)
+            .addPass(rays ? new WallPass() : new SpanWallPass())
+            .addPass(new ComposePass());
+    }
+
+    public Raycaster addPass(RenderPass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    /**
+     * Draw one frame into {@code target}. The camera's plane must already match the field of view.
+     *
+     * @return the per-column wall depth, valid until the next call
+     */
+    public double[] render(Camera camera, CompiledMap map, TextureStore textures, RenderTarget target) {
+        ctx.camera = camera;
+        ctx.map = map;
+        ctx.textures = textures;
+        ctx.target = target;
+        ctx.viewDistance = viewDistance;
+        ctx.columnMajor = columnMajor;
+        ctx.width = target.getWidth();
+        ctx.height = target.getHeight();
+        ctx.horizon = ctx.height / 2;
+        double planeLength = Math.hypot(camera.planeX, camera.planeY);
+        ctx.focal = (ctx.width / 2.0) / (planeLength == 0 ? 1 : planeLength);
+        int cell = map.cellAt(camera.x, camera.y);
+        ctx.visibleWalls = map.visibleWalls(cell);
+        ctx.visibleStart = map.visibleStart(cell);
+        ctx.visibleEnd = map.visibleEnd(cell);
+        if (columnMajor) {
+            Arrays.fill(target.getWallStart(), 0);
+            Arrays.fill(target.getWallEnd(), 0);
+        }
+        for (RenderPass pass : passes) {
+            pass.render(ctx);
+        }
+        return target.getDepth();
+    }
+}
@@ -0,0 +1,96 @@
+package jangalang.client.render;
+
+import java.util.List;
+
+import jangalang.common.maps.CompiledMap;
+import jangalang.common.maps.MapData;
+import jangalang.common.maps.Wall;
+
+/**
+ * Times the row-major pipeline (floor, then walls straight into the framebuffer) against the
+ * column-major one (walls into the column buffer, then a tiled ComposePass) at several
+ * resolutions, once in an open room where floor dominates and once in a small room where walls
+ * fill most of the screen. Uses synthetic maps and procedural textures so it needs no resources:
+ *
+ * <pre>java -cp target/classes jangalang.client.render.RenderBenchmark [frames]</pre>
+ */
+public final class RenderBenchmark {
+    private static final int[][] RESOLUTIONS = { {1280, 720}, {1920, 1080}, {2560, 1440}, {3840, 2160} };
+    private static final int WARMUP = 30;
+
+    private RenderBenchmark() {}
+
+    public static void main(String[] args) {
+        final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final CompiledMap[] maps = { room().compiled(), box(1.5).compiled() };
+        final String[] names = { "open", "close" };
+        final TextureStore textures = new TextureStore(List.of(checker(256, 0x8a7560, 0x5d4c3a)),
+                                                       List.of(checker(256, 0x707070, 0x505050)));
+
+        Raycaster rows = new Raycaster(250).addPass(new FloorPass()).addPass(new SpanWallPass());
+        Raycaster cols = new Raycaster(250, true).addPass(new SpanWallPass()).addPass(new ComposePass());
+
+        System.out.printf("%-6s %-10s %12s %12s %8s%n", "scene", "size", "rows us", "columns us", "speedup");
+        for (int m = 0; m < maps.length; ++m) {
+            for (int[] res : RESOLUTIONS) {
+                RenderTarget target = new RenderTarget();
+                target.ensureSize(res[0], res[1]);
+                double r = time(rows, maps[m], textures, target, frames);
+                double c = time(cols, maps[m], textures, target, frames);
+                System.out.printf("%-6s %-10s %12.0f %12.0f %7.2fx%n", names[m], res[0] + "x" + res[1], r, c, r / c);
+            }
+        }
+    }
+
+    // mean microseconds per frame while the camera turns on the spot
+    private static double time(Raycaster raycaster, CompiledMap map, TextureStore textures, RenderTarget target, int frames) {
+        Camera camera = new Camera();
+        for (int i = 0; i < WARMUP; ++i) {
+            camera.set(0.5, 0.5, i * 0.05, Math.toRadians(60));
+            raycaster.render(camera, map, textures, target);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; ++i) {
+            camera.set(0.5, 0.5, i * 0.05, Math.toRadians(60));
+            raycaster.render(camera, map, textures, target);
+        }
+        return (System.nanoTime() - start) / 1000.0 / frames;
+    }
+
+    // a 20x20 room with a ring of pillars, so columns see both near and far walls
+    private static MapData room() {
+        MapData map = box(10);
+        for (int i = 0; i < 12; ++i) {
+            double a = i * Math.PI / 6;
+            double cx = Math.cos(a) * 5;
+            double cy = Math.sin(a) * 5;
+            map.addWall(new Wall(cx - 0.5, cy - 0.5, cx + 0.5, cy - 0.5));
+            map.addWall(new Wall(cx + 0.5, cy - 0.5, cx + 0.5, cy + 0.5));
+            map.addWall(new Wall(cx + 0.5, cy + 0.5, cx - 0.5, cy + 0.5));
+            map.addWall(new Wall(cx - 0.5, cy + 0.5, cx - 0.5, cy - 0.5));
+        }
+        return map;
+    }
+
+    // square room of half-size r around the camera at (0.5, 0.5)
+    private static MapData box(double r) {
+        double lo = 0.5 - r;
+        double hi = 0.5 + r;
+        MapData map = new MapData();
+        map.addWall(new Wall(lo, lo, hi, lo));
+        map.addWall(new Wall(hi, lo, hi, hi));
+        map.addWall(new Wall(hi, hi, lo, hi));
+        map.addWall(new Wall(lo, hi, lo, lo));
+        return map;
+    }
+
+    private static Texture checker(int size, int a, int b) {
+        int[] pixels = new int[size * size];
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                pixels[y * size + x] = ((x >> 5) + (y >> 5) & 1) == 0 ? a : b;
+            }
+        }
+        return new Texture(pixels, size, size);
+    }
+}
@@ -0,0 +1,27 @@
+package jangalang.client.render;
+
+import jangalang.common.maps.CompiledMap;
+
+/**
+ * Everything a pass needs for one frame, plus the projection constants derived from it.
+ */
+public class RenderContext {
+    public Camera camera;
+    public CompiledMap map;
+    public TextureStore textures;
+    public RenderTarget target;
+    public double viewDistance;
+    // walls go to the target's column buffer for a later ComposePass instead of the framebuffer
+    public boolean columnMajor;
+
+    // derived per frame by Raycaster
+    public int width;
+    public int height;
+    public int horizon;
+    // pixels per world unit at distance 1; walls are 1 unit tall with the eye halfway up
+    public double focal;
+    // walls potentially visible from the camera: indices visibleWalls[visibleStart .. visibleEnd)
+    public int[] visibleWalls;
+    public int visibleStart;
+    public int visibleEnd;
+}
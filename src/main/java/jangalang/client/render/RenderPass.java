@@ -0,0 +1,8 @@
+package jangalang.client.render;
+
+/**
+ * One stage of the frame (floor, walls, sprites, HUD), run in order by the Raycaster.
+ */
+public interface RenderPass {
+    void render(RenderContext ctx);
+}
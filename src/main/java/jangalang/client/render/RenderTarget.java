@@ -0,0 +1,65 @@
+package jangalang.client.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A reusable software framebuffer: an INT_RGB image whose backing int[] is drawn into directly,
+ * plus the per-column depth of the closest wall. Also holds a column-major scratch buffer (column x
+ * at {@code x * height}) and the row range [wallStart, wallEnd) each column's wall covers in it.
+ * Only reallocated when the size changes.
+ */
+public class RenderTarget {
+    private BufferedImage image;
+    private int[] pixels;
+    private double[] depth;
+    private int[] columns;
+    private int[] wallStart;
+    private int[] wallEnd;
+    private int width;
+    private int height;
+
+    public void ensureSize(int width, int height) {
+        if (image != null && width == this.width && height == this.height) return;
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.depth = new double[this.width];
+        this.columns = new int[this.width * this.height];
+        this.wallStart = new int[this.width];
+        this.wallEnd = new int[this.width];
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public double[] getDepth() {
+        return depth;
+    }
+
+    public int[] getColumns() {
+        return columns;
+    }
+
+    public int[] getWallStart() {
+        return wallStart;
+    }
+
+    public int[] getWallEnd() {
+        return wallEnd;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
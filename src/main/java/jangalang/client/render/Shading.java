@@ -0,0 +1,41 @@
+package jangalang.client.render;
+
+/**
+ * Light arithmetic shared by every pass, done through one 256x256 lookup table. Light levels are
+ * 0-255 (255 = full brightness). Distance fog falls linearly from full at the eye to MIN_LIGHT at
+ * the view distance and is combined with the map's baked light before shading.
+ */
+public final class Shading {
+    public static final double MIN_LIGHT = 0.2;
+    public static final int FULL = 255;
+
+    // SCALE[(light << 8) | c] = c * light / 255
+    private static final byte[] SCALE = new byte[256 * 256];
+
+    static {
+        for (int l = 0; l < 256; ++l) {
+            for (int c = 0; c < 256; ++c) {
+                SCALE[(l << 8) | c] = (byte) ((c * l + 127) / 255);
+            }
+        }
+    }
+
+    private Shading() {}
+
+    public static int light(double distance, double viewDistance) {
+        double fade = 1.0 - Math.min(distance / viewDistance, 1.0);
+        return (int) ((MIN_LIGHT + (1.0 - MIN_LIGHT) * fade) * FULL);
+    }
+
+    /** Product of two light levels. */
+    public static int combine(int a, int b) {
+        return SCALE[(a << 8) | b] & 0xFF;
+    }
+
+    public static int shade(int rgb, int light) {
+        final int row = light << 8;
+        return (SCALE[row | ((rgb >> 16) & 0xFF)] & 0xFF) << 16
+            | (SCALE[row | ((rgb >> 8) & 0xFF)] & 0xFF) << 8
+            | (SCALE[row | (rgb & 0xFF)] & 0xFF);
+    }
+}
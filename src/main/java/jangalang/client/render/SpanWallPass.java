@@ -0,0 +1,111 @@
+package jangalang.client.render;
+
+import java.util.Arrays;
+
+import jangalang.common.maps.CompiledMap;
+
+/**
+ * Draws walls by projecting each one instead of casting a ray per column. Every wall is moved
+ * into camera space, clipped against the near plane and projected to a span of screen columns;
+ * 1/z and u/z are linear in screen x, so depth and texture u are stepped incrementally across
+ * the span and resolved against the per-column depth buffer. Textured slices are then drawn once
+ * per column for the surviving wall, so cost scales with visible walls plus pixels rather than
+ * columns times walls.
+ */
+public class SpanWallPass implements RenderPass {
+    private static final double NEAR = 0.01;
+
+    // per-column texture u and index of the closest wall so far
+    private double[] columnU = new double[0];
+    private int[] columnWall = new int[0];
+
+    @Override
+    public void render(RenderContext ctx) {
+        final int w = ctx.width;
+        final double[] depth = ctx.target.getDepth();
+        if (columnU.length != w) {
+            columnU = new double[w];
+            columnWall = new int[w];
+        }
+        final double[] us = columnU;
+        final int[] wallIds = columnWall;
+        Arrays.fill(depth, Double.POSITIVE_INFINITY);
+
+        final Camera cam = ctx.camera;
+        final double planeLenSq = cam.planeX * cam.planeX + cam.planeY * cam.planeY;
+        final double halfW = w / 2.0;
+        final double[] walls = ctx.map.getWalls();
+        final int[] visible = ctx.visibleWalls;
+        final int first = ctx.visibleStart;
+        final int last = ctx.visibleEnd;
+
+        for (int k = first; k < last; ++k) {
+            final int o = visible[k] * CompiledMap.STRIDE;
+            final double wx1 = walls[o + CompiledMap.X1];
+            final double wy1 = walls[o + CompiledMap.Y1];
+            final double wx2 = walls[o + CompiledMap.X2];
+            final double wy2 = walls[o + CompiledMap.Y2];
+
+            // camera space: z along the view direction, l along the camera plane
+            double z1 = (wx1 - cam.x) * cam.dirX + (wy1 - cam.y) * cam.dirY;
+            double z2 = (wx2 - cam.x) * cam.dirX + (wy2 - cam.y) * cam.dirY;
+            if (z1 < NEAR && z2 < NEAR) continue; // entirely behind the eye
+            double l1 = ((wx1 - cam.x) * cam.planeX + (wy1 - cam.y) * cam.planeY) / planeLenSq;
+            double l2 = ((wx2 - cam.x) * cam.planeX + (wy2 - cam.y) * cam.planeY) / planeLenSq;
+            final double length = Math.hypot(wx2 - wx1, wy2 - wy1);
+            final int wall = visible[k];
+            double u1 = 0;
+            double u2 = length;
+
+            // clip to the near plane
+            if (z1 < NEAR) {
+                double t = (NEAR - z1) / (z2 - z1);
+                l1 += (l2 - l1) * t;
+                u1 += (u2 - u1) * t;
+                z1 = NEAR;
+            } else if (z2 < NEAR) {
+                double t = (NEAR - z2) / (z1 - z2);
+                l2 += (l1 - l2) * t;
+                u2 += (u1 - u2) * t;
+                z2 = NEAR;
+            }
+
+            // project; column x samples cameraX = (2x + 1) / w - 1
+            double sx1 = (l1 / z1 + 1.0) * halfW - 0.5;
+            double sx2 = (l2 / z2 + 1.0) * halfW - 0.5;
+            if (sx1 > sx2) {
+                double t = sx1; sx1 = sx2; sx2 = t;
+                t = z1; z1 = z2; z2 = t;
+                t = u1; u1 = u2; u2 = t;
+            }
+            // columns whose centre lies in [sx1, sx2); shared endpoints never double-cover
+            final int start = Math.max(0, (int) Math.ceil(sx1));
+            final int end = Math.min(w, (int) Math.ceil(sx2));
+            if (start >= end) continue; // off screen or edge-on
+
+            final double iz1 = 1.0 / z1;
+            final double uz1 = u1 * iz1;
+            final double span = sx2 - sx1;
+            final double izStep = (1.0 / z2 - iz1) / span;
+            final double uzStep = (u2 / z2 - uz1) / span;
+            double iz = iz1 + izStep * (start - sx1);
+            double uz = uz1 + uzStep * (start - sx1);
+            for (int x = start; x < end; ++x) {
+                final double z = 1.0 / iz;
+                if (z < depth[x]) {
+                    depth[x] = z;
+                    us[x] = uz * z;
+                    wallIds[x] = wall;
+                }
+                iz += izStep;
+                uz += uzStep;
+            }
+        }
+
+        for (int x = 0; x < w; ++x) {
+            if (depth[x] != Double.POSITIVE_INFINITY) {
+                WallPass.drawColumn(ctx, x, depth[x], us[x], wallIds[x]);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package jangalang.client.render;
+
+import java.util.Arrays;
+
+import jangalang.common.maps.Lightmap;
+
+/**
+ * Draws camera-facing billboards (remote players) over the composed frame. Sprites behind the eye,
+ * past the view distance or outside the screen are culled from their centre and width alone; the
+ * rest are drawn far to near so nearer sprites overlap farther ones. Texels are alpha-tested, not
+ * blended: fully transparent ones are skipped and the rest drawn opaque. Columns where the wall
+ * depth buffer is closer are skipped too, so hidden sprites cost nothing per pixel.
+ * Sprites are queued each frame with {@link #clear()} and {@link #add(double, double)}.
+ */
+public class SpritePass implements RenderPass {
+    private static final double NEAR = 0.05;
+    // world size of a player billboard, standing on the floor
+    private static final double WIDTH = 0.5;
+    private static final double HEIGHT = 0.9;
+
+    private static final Texture PLAYER = playerSprite();
+
+    private double[] xs = new double[16];
+    private double[] ys = new double[16];
+    private int count = 0;
+
+    // visible sprites of the current frame: camera depth and screen centre, sorted by order
+    private double[] depths = new double[16];
+    private double[] centres = new double[16];
+    private int[] order = new int[16];
+
+    public void clear() {
+        count = 0;
+    }
+
+    public void add(double x, double y) {
+        if (count == xs.length) {
+            xs = Arrays.copyOf(xs, count * 2);
+            ys = Arrays.copyOf(ys, count * 2);
+            depths = Arrays.copyOf(depths, count * 2);
+            centres = Arrays.copyOf(centres, count * 2);
+            order = Arrays.copyOf(order, count * 2);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        count++;
+    }
+
+    @Override
+    public void render(RenderContext ctx) {
+        final Camera cam = ctx.camera;
+        final double planeLenSq = cam.planeX * cam.planeX + cam.planeY * cam.planeY;
+        final double halfW = ctx.width / 2.0;
+
+        int visible = 0;
+        for (int i = 0; i < count; ++i) {
+            double rx = xs[i] - cam.x;
+            double ry = ys[i] - cam.y;
+            double z = rx * cam.dirX + ry * cam.dirY;
+            if (z < NEAR || z > ctx.viewDistance) continue;
+            double centre = ((rx * cam.planeX + ry * cam.planeY) / planeLenSq / z + 1.0) * halfW - 0.5;
+            double halfSize = WIDTH * 0.5 * ctx.focal / z;
+            if (centre + halfSize < 0 || centre - halfSize >= ctx.width) continue;
+            depths[i] = z;
+            centres[i] = centre;
+            order[visible++] = i;
+        }
+
+        // insertion sort, farthest first; sprite counts are small and usually nearly sorted
+        for (int i = 1; i < visible; ++i) {
+            int s = order[i];
+            int j = i - 1;
+            while (j >= 0 && depths[order[j]] < depths[s]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = s;
+        }
+
+        // lit by the floor cell the sprite stands on
+        final Lightmap lightmap = ctx.map.getLightmap();
+        for (int i = 0; i < visible; ++i) {
+            int s = order[i];
+            int light = Shading.light(depths[s], ctx.viewDistance);
+            if (lightmap != null) light = Shading.combine(light, lightmap.floor(xs[s], ys[s]));
+            draw(ctx, PLAYER, depths[s], centres[s], light);
+        }
+    }
+
+    private static void draw(RenderContext ctx, Texture tex, double z, double centre, int light) {
+        final int[] pixels = ctx.target.getPixels();
+        final double[] depth = ctx.target.getDepth();
+        final int w = ctx.width;
+        final double scale = ctx.focal / z;
+        final double width = WIDTH * scale;
+        final double height = HEIGHT * scale;
+        final double left = centre - width * 0.5;
+        // feet on the floor, which is half a wall below the eye
+        final double bottom = ctx.horizon + 0.5 * scale;
+        final double top = bottom - height;
+
+        final int x0 = Math.max(0, (int) Math.ceil(left - 0.5));
+        final int x1 = Math.min(w, (int) Math.ceil(left + width - 0.5));
+        final int y0 = Math.max(0, (int) Math.ceil(top - 0.5));
+        final int y1 = Math.min(ctx.height, (int) Math.ceil(bottom - 0.5));
+        if (x0 >= x1 || y0 >= y1) return;
+
+        final int[] texels = tex.pixels;
+        final int tw = tex.width;
+        final int th = tex.height;
+        final int vStep = (int) (th / height * 65536);
+        final int vStart = (int) ((y0 + 0.5 - top) * th / height * 65536);
+
+        for (int x = x0; x < x1; ++x) {
+            if (depth[x] <= z) continue; // wall in front
+            final int u = Math.min(tw - 1, (int) ((x + 0.5 - left) / width * tw));
+            int v = vStart;
+            int i = y0 * w + x;
+            for (int y = y0; y < y1; ++y) {
+                final int texel = texels[Math.min(th - 1, v >> 16) * tw + u];
+                if ((texel >>> 24) != 0) {
+                    pixels[i] = Shading.shade(texel, light);
+                }
+                v += vStep;
+                i += w;
+            }
+        }
+    }
+
+    // placeholder player art until real sprites exist: a head and a body on a transparent field
+    private static Texture playerSprite() {
+        final int w = 32;
+        final int h = 64;
+        final int body = 0xFF2A9DB0;
+        final int trim = 0xFF16505A;
+        final int skin = 0xFFD8B08C;
+        int[] pixels = new int[w * h];
+        for (int y = 0; y < h; ++y) {
+            for (int x = 0; x < w; ++x) {
+                double dx = x + 0.5 - w / 2.0;
+                int c = 0;
+                if (y < 14) {
+                    double dy = y + 0.5 - 7;
+                    if (dx * dx + dy * dy <= 36) c = skin;
+                } else if (y < 40) {
+                    if (Math.abs(dx) <= 12) c = Math.abs(dx) > 10 || y < 16 ? trim : body;
+                } else {
+                    // two legs
+                    if (Math.abs(dx) >= 2 && Math.abs(dx) <= 9) c = trim;
+                }
+                pixels[y * w + x] = c;
+            }
+        }
+        return new Texture(pixels, w, h);
+    }
+}
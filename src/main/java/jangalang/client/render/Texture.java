@@ -0,0 +1,73 @@
+package jangalang.client.render;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Texture pixels as a packed RGB int array, converted once at load time, plus an optional mip
+ * chain of box-filtered half-size copies down to 1x1.
+ */
+public class Texture {
+    public final int[] pixels;
+    public final int width;
+    public final int height;
+    // mips[0] is this texture
+    private Texture[] mips;
+
+    public Texture(int[] pixels, int width, int height) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    public static Texture of(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[] pixels = new int[w * h];
+        image.getRGB(0, 0, w, h, pixels, 0, w);
+        return new Texture(pixels, w, h);
+    }
+
+    /** Build the mip chain; returns this. */
+    public Texture buildMips() {
+        int count = 1;
+        for (int w = width, h = height; w > 1 || h > 1; w = Math.max(1, w / 2), h = Math.max(1, h / 2)) {
+            count++;
+        }
+        mips = new Texture[count];
+        mips[0] = this;
+        for (int i = 1; i < count; ++i) {
+            mips[i] = mips[i - 1].half();
+        }
+        return this;
+    }
+
+    /** Mip level {@code level}, clamped to the chain; this texture if no chain was built. */
+    public Texture mip(int level) {
+        if (mips == null || level <= 0) return this;
+        return mips[Math.min(level, mips.length - 1)];
+    }
+
+    // 2x2 box filter; an odd last row/column is averaged with itself
+    private Texture half() {
+        int w = Math.max(1, width / 2);
+        int h = Math.max(1, height / 2);
+        int[] out = new int[w * h];
+        for (int y = 0; y < h; ++y) {
+            int y0 = Math.min(2 * y, height - 1) * width;
+            int y1 = Math.min(2 * y + 1, height - 1) * width;
+            for (int x = 0; x < w; ++x) {
+                int x0 = Math.min(2 * x, width - 1);
+                int x1 = Math.min(2 * x + 1, width - 1);
+                out[y * w + x] = average(pixels[y0 + x0], pixels[y0 + x1], pixels[y1 + x0], pixels[y1 + x1]);
+            }
+        }
+        return new Texture(out, w, h);
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        int r = (((a >> 16) & 0xFF) + ((b >> 16) & 0xFF) + ((c >> 16) & 0xFF) + ((d >> 16) & 0xFF) + 2) >> 2;
+        int g = (((a >> 8) & 0xFF) + ((b >> 8) & 0xFF) + ((c >> 8) & 0xFF) + ((d >> 8) & 0xFF) + 2) >> 2;
+        int bl = ((a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF) + 2) >> 2;
+        return (r << 16) | (g << 8) | bl;
+    }
+}
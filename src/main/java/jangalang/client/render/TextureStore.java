@@ -0,0 +1,94 @@
+package jangalang.client.render;
+
+import java.util.List;
+
+/**
+ * Every wall and floor texture in one atlas. Each texture is resampled once into a
+ * TILE_SIZE x TILE_SIZE tile; level l of the atlas is a single int[] holding every tile at
+ * {@code TILE_SIZE >> l} texels square, tile t starting at {@code t << 2 * (TILE_LOG2 - l)}.
+ * Power-of-two tiles let samplers wrap with a mask, and switching material is just a base offset.
+ * Material ids index the wall and floor lists; unknown ids fall back to the first entry.
+ */
+public class TextureStore {
+    public static final int TILE_LOG2 = 8;
+    public static final int TILE_SIZE = 1 << TILE_LOG2;
+
+    private final int[][] levels = new int[TILE_LOG2 + 1][];
+    private final int wallCount;
+    private final int floorCount;
+
+    public TextureStore(List<Texture> walls, List<Texture> floors) {
+        this.wallCount = walls.size();
+        this.floorCount = floors.size();
+        int tiles = wallCount + floorCount;
+        for (int l = 0; l <= TILE_LOG2; ++l) {
+            int size = TILE_SIZE >> l;
+            levels[l] = new int[tiles * size * size];
+        }
+        int tile = 0;
+        for (Texture t : walls) addTile(tile++, t);
+        for (Texture t : floors) addTile(tile++, t);
+    }
+
+    private void addTile(int tile, Texture source) {
+        Texture resampled = resample(source, TILE_SIZE).buildMips();
+        for (int l = 0; l <= TILE_LOG2; ++l) {
+            int size = TILE_SIZE >> l;
+            System.arraycopy(resampled.mip(l).pixels, 0, levels[l], tile * size * size, size * size);
+        }
+    }
+
+    /** Atlas texels at mip level {@code level} (clamped). */
+    public int[] level(int level) {
+        return levels[Math.min(Math.max(level, 0), TILE_LOG2)];
+    }
+
+    public int wallTile(int material) {
+        return material >= 0 && material < wallCount ? material : 0;
+    }
+
+    public int floorTile(int material) {
+        return wallCount + (material >= 0 && material < floorCount ? material : 0);
+    }
+
+    /** The mip level whose texels are about one screen pixel apart, given level-0 texels per pixel. */
+    public static int levelFor(double texelsPerPixel) {
+        if (texelsPerPixel < 2) return 0;
+        int level = 31 - Integer.numberOfLeadingZeros((int) Math.min(texelsPerPixel, TILE_SIZE));
+        return Math.min(level, TILE_LOG2);
+    }
+
+    // bilinear resample to size x size, wrapping at the edges so tiles stay seamless
+    private static Texture resample(Texture src, int size) {
+        if (src.width == size && src.height == size) return src;
+        int[] out = new int[size * size];
+        double sx = (double) src.width / size;
+        double sy = (double) src.height / size;
+        for (int y = 0; y < size; ++y) {
+            double fy = (y + 0.5) * sy - 0.5;
+            int y0 = (int) Math.floor(fy);
+            int wy = (int) ((fy - y0) * 256);
+            int r0 = Math.floorMod(y0, src.height) * src.width;
+            int r1 = Math.floorMod(y0 + 1, src.height) * src.width;
+            for (int x = 0; x < size; ++x) {
+                double fx = (x + 0.5) * sx - 0.5;
+                int x0 = (int) Math.floor(fx);
+                int wx = (int) ((fx - x0) * 256);
+                int c0 = Math.floorMod(x0, src.width);
+                int c1 = Math.floorMod(x0 + 1, src.width);
+                int top = lerp(src.pixels[r0 + c0], src.pixels[r0 + c1], wx);
+                int bottom = lerp(src.pixels[r1 + c0], src.pixels[r1 + c1], wx);
+                out[y * size + x] = lerp(top, bottom, wy);
+            }
+        }
+        return new Texture(out, size, size);
+    }
+
+    // per-channel a + (b - a) * t / 256
+    private static int lerp(int a, int b, int t) {
+        int r = ((a >> 16) & 0xFF) + ((((b >> 16) & 0xFF) - ((a >> 16) & 0xFF)) * t >> 8);
+        int g = ((a >> 8) & 0xFF) + ((((b >> 8) & 0xFF) - ((a >> 8) & 0xFF)) * t >> 8);
+        int bl = (a & 0xFF) + (((b & 0xFF) - (a & 0xFF)) * t >> 8);
+        return (r << 16) | (g << 8) | bl;
+    }
+}
@@ -0,0 +1,111 @@
+package jangalang.client.render;
+
+import jangalang.common.maps.CompiledMap;
+import jangalang.common.maps.Lightmap;
+
+/**
+ * Casts one ray per column against the packed wall array and draws a textured slice for the
+ * closest hit. Records the hit distance in the target's depth buffer for later passes.
+ */
+public class WallPass implements RenderPass {
+    private static final double EPSILON = 1e-9;
+
+    @Override
+    public void render(RenderContext ctx) {
+        final double[] depth = ctx.target.getDepth();
+        final int w = ctx.width;
+        final Camera cam = ctx.camera;
+        final double ox = cam.x;
+        final double oy = cam.y;
+        final double[] walls = ctx.map.getWalls();
+        final int[] visible = ctx.visibleWalls;
+        final int first = ctx.visibleStart;
+        final int last = ctx.visibleEnd;
+
+        for (int x = 0; x < w; ++x) {
+            final double cameraX = (2.0 * x + 1.0) / w - 1.0;
+            final double rdx = cam.dirX + cam.planeX * cameraX;
+            final double rdy = cam.dirY + cam.planeY * cameraX;
+
+            // ray parameter is the perpendicular distance, since rd has unit length along dir
+            double closest = Double.POSITIVE_INFINITY;
+            double hitS = 0;
+            int hitWall = 0;
+            for (int k = first; k < last; ++k) {
+                final int o = visible[k] * CompiledMap.STRIDE;
+                final double x1 = walls[o + CompiledMap.X1];
+                final double y1 = walls[o + CompiledMap.Y1];
+                final double sx = walls[o + CompiledMap.X2] - x1;
+                final double sy = walls[o + CompiledMap.Y2] - y1;
+                final double denom = rdx * sy - rdy * sx;
+                if (denom > -EPSILON && denom < EPSILON) continue; // parallel
+                final double qx = ox - x1;
+                final double qy = oy - y1;
+                final double s = (rdx * qy - rdy * qx) / denom;
+                if (s < 0 || s > 1) continue;
+                final double u = (sx * qy - sy * qx) / denom;
+                if (u > EPSILON && u < closest) {
+                    closest = u;
+                    // distance along the wall from its start, one texture repeat per unit
+                    hitS = s * Math.sqrt(sx * sx + sy * sy);
+                    hitWall = visible[k];
+                }
+            }
+            depth[x] = closest;
+            if (closest != Double.POSITIVE_INFINITY) {
+                drawColumn(ctx, x, closest, hitS, hitWall);
+            }
+        }
+    }
+
+    /**
+     * Draw the textured wall slice for column {@code x}: {@code distance} is the perpendicular
+     * distance, {@code u} the hit's distance along the wall in world units and {@code wall} the
+     * wall's index in the compiled map.
+     */
+    static void drawColumn(RenderContext ctx, int x, double distance, double u, int wall) {
+        final int material = (int) ctx.map.getWalls()[wall * CompiledMap.STRIDE + CompiledMap.MATERIAL];
+        final double lineHeight = ctx.focal / distance;
+        // short slices sample a smaller mip so texels stay about a pixel apart
+        final int level = TextureStore.levelFor(TextureStore.TILE_SIZE / lineHeight);
+        final int log2 = TextureStore.TILE_LOG2 - level;
+        final int size = 1 << log2;
+        final int[] texels = ctx.textures.level(level);
+        final int base = ctx.textures.wallTile(material) << (2 * log2);
+
+        final double top = ctx.horizon - lineHeight * 0.5;
+        final int drawStart = Math.max(0, (int) Math.ceil(top - 0.5));
+        final int drawEnd = Math.min(ctx.height - 1, (int) Math.ceil(top + lineHeight - 0.5) - 1);
+
+        final int texCol = (int) ((u - Math.floor(u)) * size) & (size - 1);
+        final Lightmap lightmap = ctx.map.getLightmap();
+        final int fog = Shading.light(distance, ctx.viewDistance);
+        final int light = lightmap == null ? fog : Shading.combine(fog, lightmap.wall(wall, u));
+
+        // a column is contiguous in the column buffer, one row apart in the framebuffer
+        final int[] dst;
+        int i;
+        final int stride;
+        if (ctx.columnMajor) {
+            dst = ctx.target.getColumns();
+            i = x * ctx.height + drawStart;
+            stride = 1;
+            ctx.target.getWallStart()[x] = drawStart;
+            ctx.target.getWallEnd()[x] = drawEnd + 1;
+        } else {
+            dst = ctx.target.getPixels();
+            i = drawStart * ctx.width + x;
+            stride = ctx.width;
+        }
+
+        // 16.16 fixed-point texture row, stepped once per pixel
+        final int step = (int) (size / lineHeight * 65536);
+        int texPos = (int) ((drawStart + 0.5 - top) * size / lineHeight * 65536);
+        for (int y = drawStart; y <= drawEnd; ++y) {
+            final int texRow = Math.min(texPos >> 16, size - 1);
+            dst[i] = Shading.shade(texels[base + (texRow << log2) + texCol], light);
+            texPos += step;
+            i += stride;
+        }
+    }
+}
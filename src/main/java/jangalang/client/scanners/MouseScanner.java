@@ -10,12 +10,27 @@ import javax.swing.JComponent;
 
 import jangalang.client.ClientGame;
 
+/**
+ * Turns absolute pointer positions into relative motion. Every event reports its distance from
+ * the previous pointer position, so no movement is dropped; the pointer is only warped back to the
+ * center once it wanders past RECENTER_MARGIN, and at most once per RECENTER_INTERVAL_NANOS.
+ * Events already queued when the pointer is warped still carry pre-warp positions, so deltas stay
+ * relative to the pre-warp position until the warp's own event (at the center) comes through.
+ */
 public class MouseScanner extends MouseAdapter {
+    private static final int RECENTER_MARGIN = 100;
+    private static final long RECENTER_INTERVAL_NANOS = 10_000_000L;
+    // a warp event not seen by then was merged with later motion; measure from the center after it
+    private static final long WARP_TIMEOUT_MILLIS = 50;
+
     private final ClientGame game;
     private Robot robot;
     private Point center;
-    private boolean mouseReset = false;
-    private boolean offsetToggle = false;
+    private int lastX;
+    private boolean hasLastX = false; // no position to measure from before the first warp lands
+    private boolean warpPending = false;
+    private long warpMillis;
+    private long lastRecenterNanos = 0;
 
     public MouseScanner(JComponent window, ClientGame game) {
         this.game = game;
@@ -28,25 +43,42 @@ public class MouseScanner extends MouseAdapter {
         Dimension size = window.getSize();
         Point location = window.getLocationOnScreen();
         this.center = new Point(location.x + size.width / 2, location.y + size.height / 2);
+        recenter(System.nanoTime());
         System.out.println("MouseScanner initialized");
     }
 
     private void onMouseMove(MouseEvent e) {
-        if (mouseReset) { // Don't read fake mouse movements
-            mouseReset = false;
-            return;
+        int x = e.getXOnScreen();
+        if (warpPending) {
+            if ((x == center.x && e.getYOnScreen() == center.y) || e.getWhen() >= warpMillis + WARP_TIMEOUT_MILLIS) {
+                // the warp has landed: everything from here on is relative to the center
+                warpPending = false;
+                hasLastX = true;
+                lastX = center.x;
+            } else if (!hasLastX) {
+                return; // queued before the first warp, with nothing to measure it against
+            }
+            // otherwise still queued from before the warp: measured against the pre-warp lastX
         }
-
-        // Get delta mouse movement
-        int dx = e.getXOnScreen() + (offsetToggle ? 1 : 0) - center.x;
+        int dx = x - lastX;
+        lastX = x;
         if (dx != 0) { // Don't send non-movements
             game.mouseMoved(-dx);
         }
 
-        offsetToggle = !offsetToggle;
+        long now = System.nanoTime();
+        boolean farOut = Math.abs(x - center.x) > RECENTER_MARGIN || Math.abs(e.getYOnScreen() - center.y) > RECENTER_MARGIN;
+        if (farOut && !warpPending && now - lastRecenterNanos >= RECENTER_INTERVAL_NANOS) {
+            recenter(now);
+        }
+    }
 
-        mouseReset = true;
+    // lastX stays at the pre-warp position until onMouseMove sees the warp land
+    private void recenter(long now) {
+        warpMillis = System.currentTimeMillis();
+        warpPending = true;
         robot.mouseMove(center.x, center.y);
+        lastRecenterNanos = now;
     }
 
     @Override
@@ -42,11 +42,8 @@ public class Window {
         frame.getContentPane().add(renderer);
         frame.setVisible(true);
         installInputs();
-        // repaint loop
-        new Timer(1000 / ApplicationProperties.getInt("game.fps"), ev -> {
-            renderer.repaint();
-            game.update();
-        }).start();
+        // repaint loop; the simulation runs on its own thread
+        new Timer(1000 / ApplicationProperties.getInt("game.fps"), ev -> renderer.repaint()).start();
 
         if (ApplicationProperties.get("game.user.hidemouse").equals("true")) {
             Toolkit toolkit = Toolkit.getDefaultToolkit();
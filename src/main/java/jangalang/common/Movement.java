@@ -0,0 +1,107 @@
+package jangalang.common;
+
+import jangalang.common.input.Actions;
+import jangalang.common.maps.CompiledMap;
+
+/**
+ * The one movement and collision step shared by the authoritative server and client prediction.
+ * Operates on a primitive state array and allocates nothing; StrictMath keeps the result
+ * bit-identical on every JVM so prediction only diverges when inputs do.
+ */
+public final class Movement {
+    // state layout
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int VEL_X = 2;
+    public static final int VEL_Y = 3;
+    public static final int STATE_SIZE = 4;
+
+    public static final double ACCEL = 0.01;
+    public static final double MAX_SPEED = 0.3;
+    public static final double FRICTION = 0.9;
+    public static final double RADIUS = 0.5;
+
+    private Movement() {}
+
+    public static void step(double[] state, int actions, double viewAngle, CompiledMap map) {
+        double fx = StrictMath.cos(viewAngle);
+        double fy = StrictMath.sin(viewAngle);
+        double dirX = 0;
+        double dirY = 0;
+        if (Actions.has(actions, Actions.FORWARD)) {
+            dirX += fx;
+            dirY += fy;
+        }
+        if (Actions.has(actions, Actions.BACKWARD)) {
+            dirX -= fx;
+            dirY -= fy;
+        }
+        // strafing follows the camera plane (-fy, fx), i.e. "right" is the right edge of the screen
+        if (Actions.has(actions, Actions.LEFT)) {
+            dirX += fy;
+            dirY -= fx;
+        }
+        if (Actions.has(actions, Actions.RIGHT)) {
+            dirX -= fy;
+            dirY += fx;
+        }
+
+        double velX = state[VEL_X];
+        double velY = state[VEL_Y];
+        if (dirX != 0 || dirY != 0) {
+            double len = StrictMath.hypot(dirX, dirY);
+            velX += dirX / len * ACCEL;
+            velY += dirY / len * ACCEL;
+
+            double speed = StrictMath.hypot(velX, velY);
+            if (speed > MAX_SPEED) {
+                velX = (velX / speed) * MAX_SPEED;
+                velY = (velY / speed) * MAX_SPEED;
+            }
+        } else {
+            velX *= FRICTION;
+            velY *= FRICTION;
+        }
+
+        double x = state[X];
+        double y = state[Y];
+        double newX = x + velX;
+        double newY = y + velY;
+
+        // slide along every wall the new position would touch
+        if (map != null) {
+            final double[] walls = map.getWalls();
+            final int n = map.getWallCount() * CompiledMap.STRIDE;
+            for (int o = 0; o < n; o += CompiledMap.STRIDE) {
+                if (touches(walls, o, newX, newY)) {
+                    double nx = walls[o + CompiledMap.NX];
+                    double ny = walls[o + CompiledMap.NY];
+                    double dot = velX * nx + velY * ny;
+                    velX -= dot * nx;
+                    velY -= dot * ny;
+                    newX = x + velX;
+                    newY = y + velY;
+                }
+            }
+        }
+
+        state[X] = newX;
+        state[Y] = newY;
+        state[VEL_X] = velX;
+        state[VEL_Y] = velY;
+    }
+
+    // circle of RADIUS at (cx, cy) against the wall segment at offset o
+    private static boolean touches(double[] walls, int o, double cx, double cy) {
+        double x1 = walls[o + CompiledMap.X1];
+        double y1 = walls[o + CompiledMap.Y1];
+        double dx = walls[o + CompiledMap.X2] - x1;
+        double dy = walls[o + CompiledMap.Y2] - y1;
+        double lenSq = dx * dx + dy * dy;
+        double t = lenSq == 0 ? 0 : ((cx - x1) * dx + (cy - y1) * dy) / lenSq;
+        t = t < 0 ? 0 : (t > 1 ? 1 : t);
+        double ex = cx - (x1 + t * dx);
+        double ey = cy - (y1 + t * dy);
+        return ex * ex + ey * ey <= RADIUS * RADIUS;
+    }
+}
@@ -0,0 +1,18 @@
+package jangalang.common.input;
+
+/**
+ * Bits of the held-actions mask. The same mask is sampled per tick, sent in InputPacket and fed to
+ * Movement, so the layout is part of the wire format.
+ */
+public final class Actions {
+    public static final int FORWARD = 1;
+    public static final int BACKWARD = 1 << 1;
+    public static final int LEFT = 1 << 2;
+    public static final int RIGHT = 1 << 3;
+
+    private Actions() {}
+
+    public static boolean has(int actions, int action) {
+        return (actions & action) != 0;
+    }
+}
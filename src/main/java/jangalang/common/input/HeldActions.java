@@ -0,0 +1,29 @@
+package jangalang.common.input;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Currently held actions as one atomic bitmask: the EDT sets and clears bits, the tick reads a
+ * consistent snapshot with {@link #get()}.
+ */
+public class HeldActions {
+    private final AtomicInteger mask = new AtomicInteger();
+
+    public void press(int keyCode) {
+        int bits = KeyBindings.actionFor(keyCode);
+        if (bits != 0) {
+            mask.getAndAccumulate(bits, (m, b) -> m | b);
+        }
+    }
+
+    public void release(int keyCode) {
+        int bits = KeyBindings.actionFor(keyCode);
+        if (bits != 0) {
+            mask.getAndAccumulate(bits, (m, b) -> m & ~b);
+        }
+    }
+
+    public int get() {
+        return mask.get();
+    }
+}
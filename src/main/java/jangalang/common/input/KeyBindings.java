@@ -0,0 +1,48 @@
+package jangalang.common.input;
+
+import java.awt.event.KeyEvent;
+
+import jangalang.common.ApplicationProperties;
+
+/**
+ * Maps key codes to action bits. Bindings come from {@code input.bind.<action>} in
+ * application.properties (key names as in {@code KeyEvent.VK_*}, e.g. {@code W} or {@code UP}).
+ */
+public final class KeyBindings {
+    private static final int TABLE_SIZE = 1024;
+    private static final int[] actionByKey = new int[TABLE_SIZE];
+
+    static {
+        bind("forward", "W", Actions.FORWARD);
+        bind("backward", "S", Actions.BACKWARD);
+        bind("left", "A", Actions.LEFT);
+        bind("right", "D", Actions.RIGHT);
+    }
+
+    private KeyBindings() {}
+
+    /** The action bits bound to {@code keyCode}, or 0. */
+    public static int actionFor(int keyCode) {
+        return keyCode >= 0 && keyCode < TABLE_SIZE ? actionByKey[keyCode] : 0;
+    }
+
+    private static void bind(String action, String defaultKey, int bit) {
+        String keys = ApplicationProperties.getOrDefault("input.bind." + action, defaultKey);
+        for (String key : keys.split(",")) {
+            int code = keyCode(key.trim());
+            if (code >= 0 && code < TABLE_SIZE) {
+                actionByKey[code] |= bit;
+            } else {
+                System.err.println("Ignoring unknown key binding " + action + "=" + key);
+            }
+        }
+    }
+
+    private static int keyCode(String name) {
+        try {
+            return KeyEvent.class.getField("VK_" + name.toUpperCase()).getInt(null);
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package jangalang.common.maps;
+
+import jangalang.common.types.Pair;
+
+/**
+ * Runtime form of a map: wall geometry packed into one primitive array so hot loops (movement,
+ * collision, rendering) never touch boxed {@link Pair}s or allocate.
+ */
+public class CompiledMap {
+    // per-wall layout in the packed array
+    public static final int X1 = 0;
+    public static final int Y1 = 1;
+    public static final int X2 = 2;
+    public static final int Y2 = 3;
+    public static final int NX = 4; // unit normal
+    public static final int NY = 5;
+    public static final int MATERIAL = 6;
+    public static final int STRIDE = 7;
+
+    private final double[] walls;
+    private final int wallCount;
+    private final int floorMaterial;
+    private final Pvs pvs;
+    private final Lightmap lightmap;
+    // 0..wallCount-1, or the walls received so far while streaming: the visible set when there is
+    // no PVS or the point is outside it
+    private final int[] allWalls;
+    private final int allCount;
+
+    public CompiledMap(MapData map) {
+        this.wallCount = map.getWalls().size();
+        this.walls = new double[wallCount * STRIDE];
+        this.floorMaterial = map.getFloorMaterial();
+        this.pvs = map.getPvs();
+        this.lightmap = map.getLightmap();
+        this.allWalls = new int[wallCount];
+        this.allCount = wallCount;
+        for (int i = 0; i < wallCount; ++i) allWalls[i] = i;
+        for (int i = 0; i < wallCount; ++i) {
+            Wall w = map.getWalls().get(i);
+            int o = i * STRIDE;
+            double x1 = w.start.getKey();
+            double y1 = w.start.getValue();
+            double x2 = w.end.getKey();
+            double y2 = w.end.getValue();
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            double len = Math.sqrt(dx * dx + dy * dy);
+            walls[o + X1] = x1;
+            walls[o + Y1] = y1;
+            walls[o + X2] = x2;
+            walls[o + Y2] = y2;
+            walls[o + NX] = len == 0 ? 0 : -dy / len;
+            walls[o + NY] = len == 0 ? 0 : dx / len;
+            walls[o + MATERIAL] = w.material;
+        }
+    }
+
+    /** Wrap walls already in the packed layout, {@code wallCount * STRIDE} values; see {@link MapFile}. */
+    CompiledMap(double[] walls, int wallCount, int floorMaterial, Pvs pvs, Lightmap lightmap) {
+        this.walls = walls;
+        this.wallCount = wallCount;
+        this.floorMaterial = floorMaterial;
+        this.pvs = pvs;
+        this.lightmap = lightmap;
+        this.allWalls = new int[wallCount];
+        this.allCount = wallCount;
+        for (int i = 0; i < wallCount; ++i) allWalls[i] = i;
+    }
+
+    /**
+     * A map still streaming in, see {@link MapAssembly}: only the slots listed in
+     * {@code present[0 .. presentCount)} hold walls, the others are NaN so nothing hits or touches them.
+     */
+    CompiledMap(double[] walls, int wallCount, int floorMaterial, Pvs pvs, Lightmap lightmap, int[] present, int presentCount) {
+        this.walls = walls;
+        this.wallCount = wallCount;
+        this.floorMaterial = floorMaterial;
+        this.pvs = pvs;
+        this.lightmap = lightmap;
+        this.allWalls = present;
+        this.allCount = presentCount;
+    }
+
+    public double[] getWalls() {
+        return walls;
+    }
+
+    public int getWallCount() {
+        return wallCount;
+    }
+
+    public int getFloorMaterial() {
+        return floorMaterial;
+    }
+
+    /** PVS cell containing (x, y), or -1 when there is no PVS or the point lies outside it. */
+    public int cellAt(double x, double y) {
+        return pvs == null ? -1 : pvs.cellAt(x, y);
+    }
+
+    /** Walls potentially visible from {@code cell} are {@code visibleWalls(cell)[visibleStart(cell) .. visibleEnd(cell))}. */
+    public int[] visibleWalls(int cell) {
+        return cell < 0 ? allWalls : pvs.getWalls();
+    }
+
+    public int visibleStart(int cell) {
+        return cell < 0 ? 0 : pvs.start(cell);
+    }
+
+    public int visibleEnd(int cell) {
+        return cell < 0 ? allCount : pvs.end(cell);
+    }
+
+    public Pvs getPvs() {
+        return pvs;
+    }
+
+    /** Baked light, or null when the map has none (fully lit). */
+    public Lightmap getLightmap() {
+        return lightmap;
+    }
+
+    /** Index of the first wall hit by the ray from (x, y) along (dx, dy), or -1. */
+    public int castRay(double x, double y, double dx, double dy) {
+        int best = -1;
+        double closest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < wallCount; ++i) {
+            double u = rayParam(walls, i * STRIDE, x, y, dx, dy);
+            if (u < closest) {
+                closest = u;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Whether no wall crosses the segment from a to b; only a's potentially visible walls are tested. */
+    public boolean lineOfSight(double ax, double ay, double bx, double by) {
+        int cell = cellAt(ax, ay);
+        int[] visible = visibleWalls(cell);
+        int end = visibleEnd(cell);
+        for (int k = visibleStart(cell); k < end; ++k) {
+            if (rayParam(walls, visible[k] * STRIDE, ax, ay, bx - ax, by - ay) <= 1.0) return false;
+        }
+        return true;
+    }
+
+    // ray parameter of the hit on the wall at offset o, or +inf
+    static double rayParam(double[] walls, int o, double x, double y, double dx, double dy) {
+        double x1 = walls[o + X1];
+        double y1 = walls[o + Y1];
+        double sx = walls[o + X2] - x1;
+        double sy = walls[o + Y2] - y1;
+        double denom = dx * sy - dy * sx;
+        if (denom > -1e-12 && denom < 1e-12) return Double.POSITIVE_INFINITY;
+        double qx = x - x1;
+        double qy = y - y1;
+        double s = (dx * qy - dy * qx) / denom;
+        double u = (sx * qy - sy * qx) / denom;
+        return s >= 0 && s <= 1 && u > 1e-9 ? u : Double.POSITIVE_INFINITY;
+    }
+}
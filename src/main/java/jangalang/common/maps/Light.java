@@ -0,0 +1,23 @@
+package jangalang.common.maps;
+
+import java.io.Serializable;
+
+/**
+ * A static point light: full {@code intensity} at its position, falling off quadratically to
+ * nothing at {@code radius}.
+ */
+public class Light implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public final double x;
+    public final double y;
+    public final double radius;
+    public final double intensity;
+
+    public Light(double x, double y, double radius, double intensity) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.intensity = intensity;
+    }
+}
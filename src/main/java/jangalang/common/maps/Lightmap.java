@@ -0,0 +1,157 @@
+package jangalang.common.maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Baked static light, one byte per sample (255 = full brightness). Walls get
+ * {@link #WALL_SAMPLES_PER_UNIT} samples per world unit along their length, wall i owning
+ * wallLight[wallOffsets[i] ..], filtered linearly between samples; the floor gets one sample per
+ * unit-square cell, which is also one floor texture repeat. Built by {@link MapCompiler}.
+ */
+public class Lightmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x4A4C4954; // "JLIT"
+    private static final int VERSION = 3;
+    // a world unit is one texture repeat; 16 samples match the texture columns of walls at mip 4 and up
+    public static final int WALL_SAMPLES_PER_UNIT = 16;
+
+    private final int wallCount;
+    private final int[] wallOffsets;
+    private final byte[] wallLight;
+    private final int floorX; // world position of floor cell (0, 0)
+    private final int floorY;
+    private final int floorCols;
+    private final int floorRows;
+    private final byte[] floorLight;
+    private final int outside; // light beyond the floor grid
+
+    public Lightmap(int wallCount, int[] wallOffsets, byte[] wallLight,
+                    int floorX, int floorY, int floorCols, int floorRows, byte[] floorLight, int outside) {
+        this.wallCount = wallCount;
+        this.wallOffsets = wallOffsets;
+        this.wallLight = wallLight;
+        this.floorX = floorX;
+        this.floorY = floorY;
+        this.floorCols = floorCols;
+        this.floorRows = floorRows;
+        this.floorLight = floorLight;
+        this.outside = outside;
+    }
+
+    /** Light (0-255) on wall {@code wall} at distance {@code s} from its start. */
+    public int wall(int wall, double s) {
+        int start = wallOffsets[wall];
+        int last = wallOffsets[wall + 1] - start - 1;
+        // sample k sits at (k + 0.5) / WALL_SAMPLES_PER_UNIT
+        double t = Math.min(Math.max(s * WALL_SAMPLES_PER_UNIT - 0.5, 0), last);
+        int i = (int) t;
+        int a = wallLight[start + i] & 0xFF;
+        if (i == last) return a;
+        int b = wallLight[start + i + 1] & 0xFF;
+        return a + (int) ((b - a) * (t - i));
+    }
+
+    /** Light (0-255) on the floor at (x, y). */
+    public int floor(double x, double y) {
+        int cx = (int) Math.floor(x) - floorX;
+        int cy = (int) Math.floor(y) - floorY;
+        if (cx < 0 || cy < 0 || cx >= floorCols || cy >= floorRows) return outside;
+        return floorLight[cy * floorCols + cx] & 0xFF;
+    }
+
+    public int[] getWallOffsets() {
+        return wallOffsets;
+    }
+
+    public byte[] getWallLight() {
+        return wallLight;
+    }
+
+    public byte[] getFloorLight() {
+        return floorLight;
+    }
+
+    public int getFloorX() {
+        return floorX;
+    }
+
+    public int getFloorY() {
+        return floorY;
+    }
+
+    public int getFloorCols() {
+        return floorCols;
+    }
+
+    public int getFloorRows() {
+        return floorRows;
+    }
+
+    public int getOutside() {
+        return outside;
+    }
+
+    public int getWallCount() {
+        return wallCount;
+    }
+
+    /** Write as a sidecar file for the walls and lights with checksum {@code key}, see {@link MapCompiler#lightKey}. */
+    public void write(OutputStream out, long key) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(key);
+        data.writeInt(wallCount);
+        for (int o : wallOffsets) data.writeInt(o);
+        data.write(wallLight);
+        data.writeInt(floorX);
+        data.writeInt(floorY);
+        data.writeInt(floorCols);
+        data.writeInt(floorRows);
+        data.write(floorLight);
+        data.writeByte(outside);
+        data.flush();
+    }
+
+    /**
+     * Read a sidecar file, rejecting it unless it was baked for the walls and lights with checksum
+     * {@code key} and its {@code wallCount} walls. Every size is checked against the file, so a
+     * damaged file is an IOException rather than a huge allocation or a bad index while drawing.
+     */
+    public static Lightmap read(InputStream in, long key, int wallCount) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(in.readAllBytes()));
+        if (data.readInt() != MAGIC) throw new IOException("Not a lightmap file");
+        int version = data.readInt();
+        if (version != VERSION) throw new IOException("Lightmap version " + version + ", expected " + VERSION);
+        if (data.readLong() != key) throw new IOException("Lightmap was baked for other walls or lights");
+        if (data.readInt() != wallCount) throw new IOException("Lightmap was baked for another wall count");
+        if (4L * (wallCount + 1) > data.available()) throw new IOException("Lightmap is corrupt");
+        int[] wallOffsets = new int[wallCount + 1];
+        for (int i = 0; i < wallOffsets.length; ++i) {
+            wallOffsets[i] = data.readInt();
+            // every wall has at least one sample
+            if (i == 0 ? wallOffsets[i] != 0 : wallOffsets[i] <= wallOffsets[i - 1]) throw new IOException("Lightmap is corrupt");
+        }
+        if (wallOffsets[wallCount] > data.available()) throw new IOException("Lightmap is corrupt");
+        byte[] wallLight = new byte[wallOffsets[wallCount]];
+        data.readFully(wallLight);
+        int floorX = data.readInt();
+        int floorY = data.readInt();
+        int floorCols = data.readInt();
+        int floorRows = data.readInt();
+        // the rest of the file is exactly the floor grid and the outside level
+        if (floorCols < 0 || floorRows < 0 || (long) floorCols * floorRows + 1 != data.available()) {
+            throw new IOException("Lightmap is corrupt");
+        }
+        byte[] floorLight = new byte[floorCols * floorRows];
+        data.readFully(floorLight);
+        int outside = data.readUnsignedByte();
+        return new Lightmap(wallCount, wallOffsets, wallLight, floorX, floorY, floorCols, floorRows, floorLight, outside);
+    }
+}
@@ -0,0 +1,166 @@
+package jangalang.common.maps;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A streamed map being put together on the client. Walls, their light, the PVS cells and the floor
+ * light are written straight to their place in the full map as chunks arrive, so {@link #map()} is
+ * playable at every step and the last chunk needs no finishing pass. A PVS cell is only used once
+ * every wall it lists is in; until then the camera in it draws every wall received.
+ */
+public class MapAssembly {
+    private final MapData skeleton;
+    private final MapLayout layout;
+    private final int round;
+    private final int total;
+    private final double[] walls; // full-map order; NaN until received
+    private final BitSet have = new BitSet();
+    private final int[] received; // full-map index of each wall received, in arrival order
+    private int count = 0;
+    // PVS in its full layout, null without one
+    private final int[] pvsOffsets;
+    private final int[] pvsWalls;
+    private final BitSet filled = new BitSet();
+    // cells whose list is in but names walls still missing, and how far each list is known to be present
+    private int[] waiting = new int[16];
+    private int waitingCount = 0;
+    private final int[] checked;
+    // lightmap in its full layout, null without one
+    private final int[] lightOffsets;
+    private final byte[] wallLight;
+    private final byte[] floorLight;
+    private MapData map;
+
+    /**
+     * Assemble {@code total} walls onto {@code skeleton}, a map without walls, for server round
+     * {@code round}; {@code layout} sizes its PVS and lightmap.
+     */
+    public MapAssembly(MapData skeleton, int total, int round, MapLayout layout) {
+        this.skeleton = skeleton;
+        this.layout = layout;
+        this.round = round;
+        this.total = total;
+        this.walls = new double[total * CompiledMap.STRIDE];
+        Arrays.fill(walls, Double.NaN);
+        this.received = new int[total];
+        int cells = layout.pvsCols * layout.pvsRows;
+        this.pvsOffsets = layout.hasPvs() ? new int[cells + 1] : null;
+        this.pvsWalls = layout.hasPvs() ? new int[layout.pvsEntries] : null;
+        this.checked = layout.hasPvs() ? new int[cells] : null;
+        this.lightOffsets = layout.hasLightmap() ? new int[total + 1] : null;
+        this.wallLight = layout.hasLightmap() ? new byte[layout.wallSamples] : null;
+        this.floorLight = layout.hasLightmap() ? new byte[layout.floorCols * layout.floorRows] : null;
+        if (floorLight != null) Arrays.fill(floorLight, (byte) layout.outside);
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getReceived() {
+        return count;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Add a chunk's walls: full-map indices, the walls in the {@link CompiledMap} packed layout and,
+     * with a lightmap, their samples back to back, wall k's going to {@code lightStarts[k]}.
+     */
+    public void addWalls(int[] indices, double[] packed, int[] lightStarts, int[] offsets, byte[] light) {
+        for (int k = 0; k < indices.length; ++k) {
+            int i = indices[k];
+            if (i < 0 || i >= total || have.get(i)) continue;
+            if (lightOffsets != null && lightStarts != null) {
+                int n = offsets[k + 1] - offsets[k];
+                System.arraycopy(light, offsets[k], wallLight, lightStarts[k], n);
+                // the end of one wall is the start of the next, so both ends can be set now
+                lightOffsets[i] = lightStarts[k];
+                lightOffsets[i + 1] = lightStarts[k] + n;
+            }
+            System.arraycopy(packed, k * CompiledMap.STRIDE, walls, i * CompiledMap.STRIDE, CompiledMap.STRIDE);
+            have.set(i);
+            received[count++] = i;
+        }
+        map = null;
+    }
+
+    /** Add the PVS cells {@code rect} = {x0, y0, x1, y1}, row by row, cell k's list going to {@code starts[k]}. */
+    public void addCells(int[] rect, int[] starts, int[] offsets, int[] lists) {
+        if (pvsOffsets == null || rect == null) return;
+        int k = 0;
+        for (int cy = rect[1]; cy < rect[3]; ++cy) {
+            for (int cx = rect[0]; cx < rect[2]; ++cx, ++k) {
+                int cell = cy * layout.pvsCols + cx;
+                int n = offsets[k + 1] - offsets[k];
+                System.arraycopy(lists, offsets[k], pvsWalls, starts[k], n);
+                pvsOffsets[cell] = starts[k];
+                pvsOffsets[cell + 1] = starts[k] + n;
+                checked[cell] = starts[k];
+                if (waitingCount == waiting.length) waiting = Arrays.copyOf(waiting, waitingCount * 2);
+                waiting[waitingCount++] = cell;
+            }
+        }
+        map = null;
+    }
+
+    /** Add the floor light of cells {@code rect} = {x0, y0, x1, y1} of the lightmap's floor grid, row by row. */
+    public void addFloor(int[] rect, byte[] light) {
+        if (floorLight == null || rect == null) return;
+        int w = rect[2] - rect[0];
+        for (int cy = rect[1]; cy < rect[3]; ++cy) {
+            System.arraycopy(light, (cy - rect[1]) * w, floorLight, cy * layout.floorCols + rect[0], w);
+        }
+        map = null;
+    }
+
+    /** Whether every wall and PVS cell has arrived. */
+    public boolean isComplete() {
+        settle();
+        return count == total && (pvsOffsets == null || filled.cardinality() == layout.pvsCols * layout.pvsRows);
+    }
+
+    /** The map as received so far. Shares the arrays, so a new map is only built after something was added. */
+    public MapData map() {
+        if (map == null) {
+            settle();
+            int cells = layout.pvsCols * layout.pvsRows;
+            Pvs pvs = null;
+            if (pvsOffsets != null) {
+                // the renderer reads the map on another thread: it gets the cells filled now, not later ones
+                BitSet usable = filled.cardinality() == cells ? null : (BitSet) filled.clone();
+                pvs = new Pvs(layout.pvsOriginX, layout.pvsOriginY, layout.pvsCellSize, layout.pvsCols, layout.pvsRows,
+                              total, pvsOffsets, pvsWalls, usable);
+            }
+            Lightmap lightmap = lightOffsets == null ? null
+                    : new Lightmap(total, lightOffsets, wallLight, layout.floorX, layout.floorY,
+                                   layout.floorCols, layout.floorRows, floorLight, layout.outside);
+            CompiledMap compiled = count == total
+                    ? new CompiledMap(walls, total, skeleton.getFloorMaterial(), pvs, lightmap)
+                    : new CompiledMap(walls, total, skeleton.getFloorMaterial(), pvs, lightmap, received, count);
+            map = new MapData(compiled, skeleton.getSpawns(), skeleton.getLights(), skeleton.getAmbient());
+        }
+        return map;
+    }
+
+    // mark the waiting cells whose walls are all in as filled; each list is scanned once overall
+    private void settle() {
+        int kept = 0;
+        for (int k = 0; k < waitingCount; ++k) {
+            int cell = waiting[k];
+            int end = pvsOffsets[cell + 1];
+            int q = checked[cell];
+            while (q < end && have.get(pvsWalls[q])) ++q;
+            checked[cell] = q;
+            if (q == end) {
+                filled.set(cell);
+            } else {
+                waiting[kept++] = cell;
+            }
+        }
+        waitingCount = kept;
+    }
+}
@@ -0,0 +1,107 @@
+package jangalang.common.maps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The maps a server can play, each compiled once into its runtime form (optimized walls, PVS,
+ * lightmap) and cached as a {@link MapFile} named after a hash of its source. A map whose source
+ * is unchanged is never parsed or compiled again, even across restarts, and {@link #load(String)}
+ * is a memory-mapped read of the cached file.
+ */
+public class MapCatalog {
+    private final Path cacheDir;
+    // map name -> compiled file, in scan order
+    private final Map<String, Path> compiled = new LinkedHashMap<>();
+
+    public MapCatalog(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /** Add every *.map in {@code dir}, named by file name without the extension. */
+    public MapCatalog scan(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> maps = Files.newDirectoryStream(dir, "*.map")) {
+            maps.forEach(files::add);
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            add(file.getFileName().toString().replaceAll("\\.map$", ""), Files.readAllBytes(file));
+        }
+        return this;
+    }
+
+    /** Add a map resource such as {@code /maps/example.map}. */
+    public MapCatalog addResource(String resource) throws IOException {
+        try (InputStream in = MapCatalog.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("Missing map " + resource);
+            String name = resource.substring(resource.lastIndexOf('/') + 1).replaceAll("\\.map$", "");
+            return add(name, in.readAllBytes());
+        }
+    }
+
+    /**
+     * Add a map from its JSON source, compiling it unless the cache already holds this exact source.
+     * A cached file that is truncated or corrupt is deleted and compiled again.
+     */
+    public MapCatalog add(String name, byte[] source) throws IOException {
+        Path file = cacheDir.resolve(name + "-" + hash(source) + ".jmap");
+        if (Files.isRegularFile(file)) {
+            try {
+                MapFile.verify(file, MapFile.sourceCrc(source));
+            } catch (IOException e) {
+                System.out.println(file + ": " + e.getMessage() + ", compiling " + name + " again");
+                Files.delete(file);
+            }
+        }
+        if (!Files.isRegularFile(file)) {
+            long start = System.nanoTime();
+            MapData map = MapLoader.compile(source, name);
+            Files.createDirectories(cacheDir);
+            MapFile.write(map, MapFile.sourceCrc(source), file);
+            System.out.printf("Compiled map %s: %d walls in %.0f ms%n", name, map.getWallCount(), (System.nanoTime() - start) / 1e6);
+        }
+        compiled.put(name, file);
+        return this;
+    }
+
+    public List<String> names() {
+        return new ArrayList<>(compiled.keySet());
+    }
+
+    public boolean isEmpty() {
+        return compiled.isEmpty();
+    }
+
+    /** The compiled map, mapped from the cache. */
+    public MapData load(String name) throws IOException {
+        Path file = compiled.get(name);
+        if (file == null) throw new IOException("Unknown map " + name);
+        return MapFile.read(file);
+    }
+
+    // content key: the source, and the compiled format it was built for
+    private static String hash(byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source);
+            digest.update((byte) MapFile.VERSION);
+            byte[] sum = digest.digest();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; ++i) sb.append(String.format("%02x", sum[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package jangalang.common.maps;
+
+/**
+ * A map cut into square chunks for streaming: every wall belongs to the chunk holding its
+ * midpoint. Wall lists are stored back to back like the {@link Pvs}, chunk c owning
+ * [offsets[c], offsets[c + 1]) of {@link #getWalls()}.
+ */
+public final class MapChunks {
+    public static final double DEFAULT_CHUNK_SIZE = 64.0;
+
+    private final double originX;
+    private final double originY;
+    private final double chunkSize;
+    private final int cols;
+    private final int rows;
+    private final int[] offsets;
+    private final int[] walls;
+
+    public MapChunks(CompiledMap map, double chunkSize) {
+        final double[] packed = map.getWalls();
+        final int n = map.getWallCount();
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double[] mids = new double[2 * n];
+        for (int i = 0; i < n; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            double x = (packed[o + CompiledMap.X1] + packed[o + CompiledMap.X2]) * 0.5;
+            double y = (packed[o + CompiledMap.Y1] + packed[o + CompiledMap.Y2]) * 0.5;
+            mids[2 * i] = x;
+            mids[2 * i + 1] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        this.chunkSize = chunkSize;
+        this.originX = n == 0 ? 0 : Math.floor(minX / chunkSize) * chunkSize;
+        this.originY = n == 0 ? 0 : Math.floor(minY / chunkSize) * chunkSize;
+        this.cols = n == 0 ? 1 : (int) ((maxX - originX) / chunkSize) + 1;
+        this.rows = n == 0 ? 1 : (int) ((maxY - originY) / chunkSize) + 1;
+
+        // counting sort of the walls by chunk
+        int[] chunkOf = new int[n];
+        this.offsets = new int[cols * rows + 1];
+        for (int i = 0; i < n; ++i) {
+            chunkOf[i] = chunkAt(mids[2 * i], mids[2 * i + 1]);
+            offsets[chunkOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; ++c) offsets[c + 1] += offsets[c];
+        this.walls = new int[n];
+        int[] fill = offsets.clone();
+        for (int i = 0; i < n; ++i) walls[fill[chunkOf[i]]++] = i;
+    }
+
+    /** Chunk containing (x, y); points off the grid go to the nearest edge chunk. */
+    public int chunkAt(double x, double y) {
+        int cx = Math.min(cols - 1, Math.max(0, (int) Math.floor((x - originX) / chunkSize)));
+        int cy = Math.min(rows - 1, Math.max(0, (int) Math.floor((y - originY) / chunkSize)));
+        return cy * cols + cx;
+    }
+
+    /**
+     * Cells of a grid whose centres lie in {@code chunk}, as {x0, y0, x1, y1} with the ends
+     * exclusive; cell (i, j) is centred at (originX + (i + 0.5) * cellSize, originY + (j + 0.5) * cellSize).
+     * Like {@link #chunkAt}, edge chunks take everything beyond them, so each cell is in exactly one chunk.
+     */
+    public int[] cover(int chunk, double originX, double originY, double cellSize, int cols, int rows) {
+        int cx = chunk % this.cols;
+        int cy = chunk / this.cols;
+        return new int[] {
+            firstIn(cx, originX, cellSize, cols, this.originX, this.cols),
+            firstIn(cy, originY, cellSize, rows, this.originY, this.rows),
+            firstIn(cx + 1, originX, cellSize, cols, this.originX, this.cols),
+            firstIn(cy + 1, originY, cellSize, rows, this.originY, this.rows),
+        };
+    }
+
+    // first of n cells along an axis whose centre is in chunk column (or row) c or later, by bisection
+    // with the same clamped floor as chunkAt
+    private int firstIn(int c, double origin, double cellSize, int n, double chunkOrigin, int chunks) {
+        if (c <= 0) return 0;
+        if (c >= chunks) return n;
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if ((int) Math.floor((origin + (mid + 0.5) * cellSize - chunkOrigin) / chunkSize) >= c) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    public int count() {
+        return cols * rows;
+    }
+
+    public int start(int chunk) {
+        return offsets[chunk];
+    }
+
+    public int end(int chunk) {
+        return offsets[chunk + 1];
+    }
+
+    /** Wall indices of every chunk, see {@link #start(int)} and {@link #end(int)}. */
+    public int[] getWalls() {
+        return walls;
+    }
+
+    /** Squared distance in chunks between two chunks' centres, for ordering. */
+    public int distanceSq(int a, int b) {
+        int dx = a % cols - b % cols;
+        int dy = a / cols - b / cols;
+        return dx * dx + dy * dy;
+    }
+}
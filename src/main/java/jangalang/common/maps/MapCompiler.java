@@ -0,0 +1,434 @@
+package jangalang.common.maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import jangalang.common.types.Pair;
+
+/**
+ * Offline map preprocessing. Computes the {@link Pvs} of a map: every cell lists the walls
+ * crossing it and every wall visible from anywhere on its boundary, see {@link #computePvs}. The
+ * set is exact, not sampled, so no gap is too narrow to see through. Then bakes the map's lights
+ * into a {@link Lightmap}, with hard shadows from the walls.
+ *
+ * The walls are cleaned up by {@link MapOptimizer} first, as they are when a JSON map is loaded.
+ *
+ * <pre>java jangalang.common.maps.MapCompiler src/main/resources/maps/example.map [cellSize]</pre>
+ * writes example.pvs, example.light if the map has lights, and the compiled example.jmap
+ * ({@link MapFile}) holding all of it next to the map.
+ */
+public final class MapCompiler {
+    public static final double DEFAULT_CELL_SIZE = 32.0;
+
+    private MapCompiler() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: MapCompiler <file.map> [cellSize]");
+            return;
+        }
+        String path = args[0];
+        double cellSize = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_CELL_SIZE;
+        byte[] source = Files.readAllBytes(Path.of(path));
+        MapData map = MapLoader.parseMap(new ByteArrayInputStream(source));
+        System.out.println(path + ": " + MapOptimizer.optimize(map));
+        Pvs pvs = computePvs(map, cellSize);
+        String out = path.replaceAll("\\.map$", "") + ".pvs";
+        try (OutputStream os = new FileOutputStream(out)) {
+            pvs.write(os, geometryKey(map));
+        }
+        System.out.printf("%s: %d walls, %dx%d cells, %.1f walls per cell%n",
+                          out, map.getWalls().size(), pvs.getCols(), pvs.getRows(),
+                          (double) pvs.getWalls().length / (pvs.getCols() * pvs.getRows()));
+
+        map.setPvs(pvs);
+        Lightmap lightmap = computeLightmap(map);
+        if (lightmap != null) {
+            String lightOut = path.replaceAll("\\.map$", "") + ".light";
+            try (OutputStream os = new FileOutputStream(lightOut)) {
+                lightmap.write(os, lightKey(map));
+            }
+            System.out.printf("%s: %d lights, %dx%d floor cells%n",
+                              lightOut, map.getLights().size(), lightmap.getFloorCols(), lightmap.getFloorRows());
+            map.setLightmap(lightmap);
+        }
+
+        Path compiled = Path.of(path.replaceAll("\\.map$", "") + ".jmap");
+        MapFile.write(map, MapFile.sourceCrc(source), compiled);
+        System.out.printf("%s: %d bytes%n", compiled, Files.size(compiled));
+    }
+
+    /**
+     * Checksum of a map's walls, in order. A PVS depends on nothing else, so its sidecar file is
+     * keyed on this and rejected as soon as any wall is added, removed, moved or reordered.
+     */
+    public static long geometryKey(MapData map) {
+        CompiledMap compiled = map.compiled();
+        ByteBuffer buf = ByteBuffer.allocate(8 * 4 * compiled.getWallCount());
+        double[] walls = compiled.getWalls();
+        for (int o = 0; o < compiled.getWallCount() * CompiledMap.STRIDE; o += CompiledMap.STRIDE) {
+            buf.putDouble(walls[o + CompiledMap.X1]).putDouble(walls[o + CompiledMap.Y1])
+               .putDouble(walls[o + CompiledMap.X2]).putDouble(walls[o + CompiledMap.Y2]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.flip());
+        return crc.getValue();
+    }
+
+    /**
+     * Checksum of everything a {@link Lightmap} is baked from: the walls, as in {@link #geometryKey},
+     * then every light and the ambient level. A moved, added or dimmed light changes it.
+     */
+    public static long lightKey(MapData map) {
+        List<Light> lights = map.getLights();
+        ByteBuffer buf = ByteBuffer.allocate(8 + 8 * 4 * lights.size() + 8);
+        buf.putLong(geometryKey(map));
+        for (Light l : lights) {
+            buf.putDouble(l.x).putDouble(l.y).putDouble(l.radius).putDouble(l.intensity);
+        }
+        buf.putDouble(map.getAmbient());
+        CRC32 crc = new CRC32();
+        crc.update(buf.flip());
+        return crc.getValue();
+    }
+
+    /**
+     * Bake the map's lights: {@link Lightmap#WALL_SAMPLES_PER_UNIT} samples per world unit along
+     * each wall and one per unit floor cell.
+     * Uses the map's PVS for shadow rays when it has one. Returns null for maps without lights.
+     */
+    public static Lightmap computeLightmap(MapData map) {
+        if (map.getLights().isEmpty()) return null;
+        CompiledMap compiled = map.compiled();
+        double[] walls = compiled.getWalls();
+        int wallCount = compiled.getWallCount();
+
+        int[] wallOffsets = new int[wallCount + 1];
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            double len = Math.hypot(walls[o + CompiledMap.X2] - walls[o + CompiledMap.X1],
+                                    walls[o + CompiledMap.Y2] - walls[o + CompiledMap.Y1]);
+            wallOffsets[i + 1] = wallOffsets[i] + Math.max(1, (int) Math.ceil(len * Lightmap.WALL_SAMPLES_PER_UNIT));
+        }
+        byte[] wallLight = new byte[wallOffsets[wallCount]];
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            double x1 = walls[o + CompiledMap.X1];
+            double y1 = walls[o + CompiledMap.Y1];
+            double len = Math.hypot(walls[o + CompiledMap.X2] - x1, walls[o + CompiledMap.Y2] - y1);
+            double ux = len == 0 ? 0 : (walls[o + CompiledMap.X2] - x1) / len;
+            double uy = len == 0 ? 0 : (walls[o + CompiledMap.Y2] - y1) / len;
+            double nx = walls[o + CompiledMap.NX];
+            double ny = walls[o + CompiledMap.NY];
+            for (int k = wallOffsets[i]; k < wallOffsets[i + 1]; ++k) {
+                double s = Math.min(len, (k - wallOffsets[i] + 0.5) / Lightmap.WALL_SAMPLES_PER_UNIT);
+                wallLight[k] = toByte(lightAt(map, compiled, x1 + ux * s, y1 + uy * s, nx, ny));
+            }
+        }
+
+        // floor grid over the walls' bounds
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            minX = Math.min(minX, Math.min(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]));
+            minY = Math.min(minY, Math.min(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]));
+            maxX = Math.max(maxX, Math.max(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]));
+            maxY = Math.max(maxY, Math.max(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]));
+        }
+        int floorX = wallCount == 0 ? 0 : (int) Math.floor(minX);
+        int floorY = wallCount == 0 ? 0 : (int) Math.floor(minY);
+        int cols = wallCount == 0 ? 0 : (int) Math.ceil(maxX) - floorX;
+        int rows = wallCount == 0 ? 0 : (int) Math.ceil(maxY) - floorY;
+        byte[] floorLight = new byte[cols * rows];
+        for (int cy = 0; cy < rows; ++cy) {
+            for (int cx = 0; cx < cols; ++cx) {
+                floorLight[cy * cols + cx] = toByte(lightAt(map, compiled, floorX + cx + 0.5, floorY + cy + 0.5, 0, 0));
+            }
+        }
+        return new Lightmap(wallCount, wallOffsets, wallLight, floorX, floorY, cols, rows, floorLight,
+                            toByte(map.getAmbient()));
+    }
+
+    // ambient plus every light that reaches (x, y); a non-zero normal adds Lambert falloff
+    private static double lightAt(MapData map, CompiledMap compiled, double x, double y, double nx, double ny) {
+        double total = map.getAmbient();
+        for (Light light : map.getLights()) {
+            double dx = light.x - x;
+            double dy = light.y - y;
+            double d = Math.hypot(dx, dy);
+            if (d >= light.radius) continue;
+            double px = x;
+            double py = y;
+            double facing = 1.0;
+            if (nx != 0 || ny != 0) {
+                double dot = d == 0 ? 1 : (dx * nx + dy * ny) / d;
+                facing = Math.abs(dot);
+                // lift the sample off the wall, towards the light, so it can't shadow itself
+                double side = dot < 0 ? -0.01 : 0.01;
+                px += nx * side;
+                py += ny * side;
+            }
+            if (!compiled.lineOfSight(light.x, light.y, px, py)) continue;
+            double falloff = 1.0 - d / light.radius;
+            total += light.intensity * falloff * falloff * facing;
+        }
+        return total;
+    }
+
+    private static byte toByte(double light) {
+        return (byte) Math.round(Math.min(Math.max(light, 0), 1) * 255);
+    }
+
+    /**
+     * Compute the PVS for cells of {@code cellSize}. A wall outside a cell can only be seen from
+     * inside it through the cell's boundary, so it is enough to know what every boundary point
+     * sees. From one point that is exact: the first wall hit only changes at the angle of a vertex
+     * (a wall endpoint or where two walls cross), so a ray at every vertex angle and one between
+     * each consecutive pair finds every wall visible from the point, however narrow the gap. Along
+     * an edge, what is visible only changes where the edge crosses the line through two vertices,
+     * beyond both and with the nearer one in sight; visibility is taken at each such event and once
+     * between consecutive events, which covers every point of the edge. Rays walk a
+     * {@link WallGrid}, so each costs the walls near its path.
+     */
+    public static Pvs computePvs(MapData map, double cellSize) {
+        CompiledMap compiled = new CompiledMap(map);
+        double[] walls = compiled.getWalls();
+        int wallCount = compiled.getWallCount();
+        WallGrid grid = new WallGrid(compiled);
+
+        // grid over everything in the map, one cell of margin
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            minX = Math.min(minX, Math.min(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]));
+            minY = Math.min(minY, Math.min(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]));
+            maxX = Math.max(maxX, Math.max(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]));
+            maxY = Math.max(maxY, Math.max(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]));
+        }
+        for (Pair<Double, Double> s : map.getSpawns()) {
+            minX = Math.min(minX, s.getKey());
+            minY = Math.min(minY, s.getValue());
+            maxX = Math.max(maxX, s.getKey());
+            maxY = Math.max(maxY, s.getValue());
+        }
+        if (minX > maxX) {
+            minX = minY = 0;
+            maxX = maxY = cellSize;
+        }
+        double originX = Math.floor(minX / cellSize) * cellSize - cellSize;
+        double originY = Math.floor(minY / cellSize) * cellSize - cellSize;
+        int cols = (int) Math.ceil((maxX - originX) / cellSize) + 1;
+        int rows = (int) Math.ceil((maxY - originY) / cellSize) + 1;
+
+        double[] vertices = vertices(grid, walls, wallCount);
+        double[] angles = new double[vertices.length / 2];
+
+        // events per grid edge: horizontal edge (line j, column cx) at j * cols + cx, vertical
+        // edge (line i, row cy) at i * rows + cy; each holds the crossing's x or y respectively
+        List<List<Double>> hEvents = new ArrayList<>();
+        List<List<Double>> vEvents = new ArrayList<>();
+        for (int k = 0; k < (rows + 1) * cols; ++k) hEvents.add(new ArrayList<>());
+        for (int k = 0; k < (cols + 1) * rows; ++k) vEvents.add(new ArrayList<>());
+        for (int a = 0; a < vertices.length; a += 2) {
+            for (int b = a + 2; b < vertices.length; b += 2) {
+                double ax = vertices[a], ay = vertices[a + 1];
+                double dx = vertices[b] - ax, dy = vertices[b + 1] - ay;
+                if (dy != 0) {
+                    for (int j = 0; j <= rows; ++j) {
+                        double y = originY + j * cellSize;
+                        double s = (y - ay) / dy;
+                        double x = ax + s * dx;
+                        int cx = (int) Math.floor((x - originX) / cellSize);
+                        if (cx < 0 || cx >= cols || !event(grid, walls, x, y, vertices, a, b, s)) continue;
+                        hEvents.get(j * cols + cx).add(x);
+                    }
+                }
+                if (dx != 0) {
+                    for (int i = 0; i <= cols; ++i) {
+                        double x = originX + i * cellSize;
+                        double s = (x - ax) / dx;
+                        double y = ay + s * dy;
+                        int cy = (int) Math.floor((y - originY) / cellSize);
+                        if (cy < 0 || cy >= rows || !event(grid, walls, x, y, vertices, a, b, s)) continue;
+                        vEvents.get(i * rows + cy).add(y);
+                    }
+                }
+            }
+        }
+
+        // what each edge sees, shared by the two cells on either side of it
+        BitSet[] hSeen = new BitSet[(rows + 1) * cols];
+        BitSet[] vSeen = new BitSet[(cols + 1) * rows];
+        for (int j = 0; j <= rows; ++j) {
+            for (int cx = 0; cx < cols; ++cx) {
+                double x0 = originX + cx * cellSize;
+                double y = originY + j * cellSize;
+                hSeen[j * cols + cx] = visibleAlong(grid, x0, y, x0 + cellSize, y,
+                                                    hEvents.get(j * cols + cx), x0, vertices, angles, wallCount);
+            }
+        }
+        for (int i = 0; i <= cols; ++i) {
+            for (int cy = 0; cy < rows; ++cy) {
+                double x = originX + i * cellSize;
+                double y0 = originY + cy * cellSize;
+                vSeen[i * rows + cy] = visibleAlong(grid, x, y0, x, y0 + cellSize,
+                                                    vEvents.get(i * rows + cy), y0, vertices, angles, wallCount);
+            }
+        }
+
+        int[][] corners = corners(walls, wallCount);
+        int[] offsets = new int[cols * rows + 1];
+        ArrayList<Integer> list = new ArrayList<>();
+        BitSet seen = new BitSet(wallCount);
+        BitSet widened = new BitSet(wallCount);
+        for (int cy = 0; cy < rows; ++cy) {
+            for (int cx = 0; cx < cols; ++cx) {
+                seen.clear();
+                double x0 = originX + cx * cellSize;
+                double y0 = originY + cy * cellSize;
+                grid.wallsIn(x0, y0, x0 + cellSize, y0 + cellSize, seen::set);
+                seen.or(hSeen[cy * cols + cx]);
+                seen.or(hSeen[(cy + 1) * cols + cx]);
+                seen.or(vSeen[cx * rows + cy]);
+                seen.or(vSeen[(cx + 1) * rows + cy]);
+                // a ray grazing a corner can miss the wall it should hit by a rounding error and
+                // hit the other wall there instead, so a visible wall brings its corner neighbours
+                widened.clear();
+                for (int i = seen.nextSetBit(0); i >= 0; i = seen.nextSetBit(i + 1)) {
+                    for (int j : corners[i]) widened.set(j);
+                }
+                seen.or(widened);
+                offsets[cy * cols + cx] = list.size();
+                for (int i = seen.nextSetBit(0); i >= 0; i = seen.nextSetBit(i + 1)) list.add(i);
+            }
+        }
+        offsets[cols * rows] = list.size();
+        int[] pvsWalls = new int[list.size()];
+        for (int i = 0; i < pvsWalls.length; ++i) pvsWalls[i] = list.get(i);
+        return new Pvs(originX, originY, cellSize, cols, rows, wallCount, offsets, pvsWalls);
+    }
+
+    // for each wall, the other walls sharing an endpoint with it
+    private static int[][] corners(double[] walls, int wallCount) {
+        Map<List<Double>, List<Integer>> at = new HashMap<>();
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            at.computeIfAbsent(List.of(walls[o + CompiledMap.X1], walls[o + CompiledMap.Y1]), k -> new ArrayList<>()).add(i);
+            at.computeIfAbsent(List.of(walls[o + CompiledMap.X2], walls[o + CompiledMap.Y2]), k -> new ArrayList<>()).add(i);
+        }
+        int[][] corners = new int[wallCount][];
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            Set<Integer> next = new LinkedHashSet<>(at.get(List.of(walls[o + CompiledMap.X1], walls[o + CompiledMap.Y1])));
+            next.addAll(at.get(List.of(walls[o + CompiledMap.X2], walls[o + CompiledMap.Y2])));
+            next.remove(i);
+            corners[i] = next.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return corners;
+    }
+
+    // wall endpoints and the points where two walls cross, each once, as x, y pairs
+    private static double[] vertices(WallGrid grid, double[] walls, int wallCount) {
+        // walls meeting at a corner share an endpoint
+        Set<List<Double>> unique = new LinkedHashSet<>();
+        for (int i = 0; i < wallCount; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            unique.add(List.of(walls[o + CompiledMap.X1], walls[o + CompiledMap.Y1]));
+            unique.add(List.of(walls[o + CompiledMap.X2], walls[o + CompiledMap.Y2]));
+        }
+        for (int i = 0; i < wallCount; ++i) {
+            final int o = i * CompiledMap.STRIDE;
+            final double ax = walls[o + CompiledMap.X1], ay = walls[o + CompiledMap.Y1];
+            final double rx = walls[o + CompiledMap.X2] - ax, ry = walls[o + CompiledMap.Y2] - ay;
+            grid.wallsIn(Math.min(ax, ax + rx), Math.min(ay, ay + ry), Math.max(ax, ax + rx), Math.max(ay, ay + ry), j -> {
+                int p = j * CompiledMap.STRIDE;
+                if (p <= o) return;
+                double cx = walls[p + CompiledMap.X1], cy = walls[p + CompiledMap.Y1];
+                double sx = walls[p + CompiledMap.X2] - cx, sy = walls[p + CompiledMap.Y2] - cy;
+                double denom = rx * sy - ry * sx;
+                if (denom == 0) return;
+                double t = ((cx - ax) * sy - (cy - ay) * sx) / denom;
+                double u = ((cx - ax) * ry - (cy - ay) * rx) / denom;
+                if (t > 0 && t < 1 && u > 0 && u < 1) unique.add(List.of(ax + t * rx, ay + t * ry));
+            });
+        }
+        double[] vertices = new double[2 * unique.size()];
+        int k = 0;
+        for (List<Double> v : unique) {
+            vertices[k++] = v.get(0);
+            vertices[k++] = v.get(1);
+        }
+        return vertices;
+    }
+
+    // whether (x, y), at parameter s on the line from vertex a to vertex b, is where the two line up
+    // as seen from an edge: beyond both of them, with the nearer one not hidden behind a wall
+    private static boolean event(WallGrid grid, double[] walls, double x, double y, double[] vertices, int a, int b, double s) {
+        if (s > 0 && s < 1) return false;
+        int near = s <= 0 ? a : b;
+        double dx = vertices[near] - x;
+        double dy = vertices[near + 1] - y;
+        if (dx == 0 && dy == 0) return true;
+        int hit = grid.castRay(x, y, dx, dy);
+        return hit < 0 || CompiledMap.rayParam(walls, hit * CompiledMap.STRIDE, x, y, dx, dy) >= 1 - 1e-9;
+    }
+
+    // every wall visible from the edge (x0, y0)-(x1, y1): from both ends, each event (given as a
+    // coordinate along the edge from start) and a point between each consecutive pair
+    private static BitSet visibleAlong(WallGrid grid, double x0, double y0, double x1, double y1,
+                                       List<Double> events, double start, double[] vertices, double[] angles, int wallCount) {
+        double length = Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0));
+        double[] t = new double[events.size() + 2];
+        int n = 0;
+        t[n++] = 0;
+        t[n++] = 1;
+        for (double e : events) t[n++] = Math.min(Math.max((e - start) / length, 0), 1);
+        Arrays.sort(t);
+        BitSet seen = new BitSet(wallCount);
+        for (int k = 0; k < n; ++k) {
+            if (k > 0 && t[k] == t[k - 1]) continue;
+            visibleFrom(grid, x0 + (x1 - x0) * t[k], y0 + (y1 - y0) * t[k], vertices, angles, seen);
+            if (k + 1 < n && t[k + 1] > t[k]) {
+                double m = (t[k] + t[k + 1]) * 0.5;
+                visibleFrom(grid, x0 + (x1 - x0) * m, y0 + (y1 - y0) * m, vertices, angles, seen);
+            }
+        }
+        return seen;
+    }
+
+    // mark every wall visible from (px, py): rays at each vertex angle and midway to the next
+    private static void visibleFrom(WallGrid grid, double px, double py, double[] vertices, double[] angles, BitSet seen) {
+        int m = 0;
+        for (int k = 0; k < vertices.length; k += 2) {
+            if (vertices[k] == px && vertices[k + 1] == py) continue;
+            angles[m++] = Math.atan2(vertices[k + 1] - py, vertices[k] - px);
+        }
+        Arrays.sort(angles, 0, m);
+        for (int k = 0; k < m; ++k) {
+            double next = k + 1 < m ? angles[k + 1] : angles[0] + 2 * Math.PI;
+            cast(grid, px, py, angles[k], seen);
+            cast(grid, px, py, (angles[k] + next) * 0.5, seen);
+        }
+    }
+
+    private static void cast(WallGrid grid, double px, double py, double angle, BitSet seen) {
+        int hit = grid.castRay(px, py, Math.cos(angle), Math.sin(angle));
+        if (hit >= 0) seen.set(hit);
+    }
+}
@@ -1,18 +1,45 @@
 package jangalang.common.maps;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import jangalang.common.types.Pair;
 
 public class MapData implements Serializable {
     private static final long serialVersionUID = 1L;
+    // an index into the client's floor textures
+    public static final int DEFAULT_FLOOR_MATERIAL = 2;
 
     private ArrayList<Pair<Double, Double>> spawns;
+    // null while a map loaded from its compiled form has not been asked for Wall objects
     private ArrayList<Wall> walls;
+    private int floorMaterial = DEFAULT_FLOOR_MATERIAL;
+    private ArrayList<Light> lights;
+    private double ambient = 1.0;
+    private Pvs pvs;
+    private Lightmap lightmap;
+
+    // built on first use on whichever side received the map; never serialized
+    private transient CompiledMap compiled;
+    // built on first use by servers streaming the map; immutable, so a racing rebuild is harmless
+    private transient MapChunks chunks;
 
     public MapData() {
         this.spawns = new ArrayList<Pair<Double, Double>>();
         this.walls = new ArrayList<Wall>();
+        this.lights = new ArrayList<Light>();
+    }
+
+    /** A map loaded straight into its runtime form; the Wall list is only built if asked for. */
+    MapData(CompiledMap compiled, ArrayList<Pair<Double, Double>> spawns, ArrayList<Light> lights, double ambient) {
+        this.spawns = spawns;
+        this.lights = lights;
+        this.ambient = ambient;
+        this.floorMaterial = compiled.getFloorMaterial();
+        this.pvs = compiled.getPvs();
+        this.lightmap = compiled.getLightmap();
+        this.compiled = compiled;
     }
 
     public void addSpawn(double x, double y) {
@@ -24,7 +51,95 @@ public class MapData implements Serializable {
     }
 
     public void addWall(Wall wall) {
-        this.walls.add(wall);
+        getWalls().add(wall);
+        this.pvs = null; // no longer match the geometry
+        this.lightmap = null;
+        dropCompiled();
+    }
+
+    /** Replace all walls, e.g. after {@link MapOptimizer}; the PVS and lightmap no longer apply. */
+    public void setWalls(ArrayList<Wall> walls) {
+        this.walls = walls;
+        this.pvs = null;
+        this.lightmap = null;
+        this.compiled = null;
+        this.chunks = null;
+    }
+
+    public void addLight(Light light) {
+        this.lights.add(light);
+        this.lightmap = null;
+    }
+
+    public ArrayList<Light> getLights() {
+        return this.lights;
+    }
+
+    /** Light level (0-1) everywhere no light reaches; maps without lights are fully lit. */
+    public void setAmbient(double ambient) {
+        this.ambient = ambient;
+        this.lightmap = null;
+    }
+
+    public double getAmbient() {
+        return this.ambient;
+    }
+
+    public void setFloorMaterial(int floorMaterial) {
+        this.floorMaterial = floorMaterial;
+        dropCompiled();
+    }
+
+    public int getFloorMaterial() {
+        return this.floorMaterial;
+    }
+
+    public void setPvs(Pvs pvs) {
+        this.pvs = pvs;
+        dropCompiled();
+    }
+
+    public Pvs getPvs() {
+        return this.pvs;
+    }
+
+    public void setLightmap(Lightmap lightmap) {
+        this.lightmap = lightmap;
+        dropCompiled();
+    }
+
+    public Lightmap getLightmap() {
+        return this.lightmap;
+    }
+
+    // the compiled form may be the only copy of the walls
+    private void dropCompiled() {
+        getWalls();
+        this.compiled = null;
+        this.chunks = null;
+    }
+
+    public CompiledMap compiled() {
+        if (this.compiled == null) {
+            this.compiled = new CompiledMap(this);
+        }
+        return this.compiled;
+    }
+
+    /** The walls cut into chunks for streaming, see {@link MapChunks}. */
+    public MapChunks chunks() {
+        MapChunks c = this.chunks;
+        if (c == null) {
+            c = new MapChunks(compiled(), MapChunks.DEFAULT_CHUNK_SIZE);
+            this.chunks = c;
+        }
+        return c;
+    }
+
+    /** This map with no walls, PVS or lightmap: what a client needs before streamed walls arrive. */
+    public MapData withoutWalls() {
+        return new MapData(new CompiledMap(new double[0], 0, floorMaterial, null, null),
+                           new ArrayList<>(spawns), new ArrayList<>(lights), ambient);
     }
 
     public ArrayList<Pair<Double, Double>> getSpawns() {
@@ -32,9 +147,29 @@ public class MapData implements Serializable {
     }
 
     public ArrayList<Wall> getWalls() {
+        if (this.walls == null) {
+            double[] packed = this.compiled.getWalls();
+            int n = this.compiled.getWallCount();
+            this.walls = new ArrayList<Wall>(n);
+            for (int o = 0; o < n * CompiledMap.STRIDE; o += CompiledMap.STRIDE) {
+                this.walls.add(new Wall(packed[o + CompiledMap.X1], packed[o + CompiledMap.Y1],
+                                        packed[o + CompiledMap.X2], packed[o + CompiledMap.Y2],
+                                        (int) packed[o + CompiledMap.MATERIAL]));
+            }
+        }
         return this.walls;
     }
 
+    /** Number of walls, without building the Wall list of a compiled map. */
+    public int getWallCount() {
+        return this.walls != null ? this.walls.size() : this.compiled.getWallCount();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getWalls(); // compiled maps are sent as plain walls
+        out.defaultWriteObject();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -46,7 +181,7 @@ public class MapData implements Serializable {
             sb.append(")\n");
         }
 
-        for (Wall w : this.walls) {
+        for (Wall w : getWalls()) {
             sb.append("Wall(");
             sb.append(w.start.getKey());
             sb.append(" ");
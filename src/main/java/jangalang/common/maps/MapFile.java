@@ -0,0 +1,216 @@
+package jangalang.common.maps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import jangalang.common.types.Pair;
+
+/**
+ * The compiled binary map format (.jmap): a map already in its runtime form, so loading is a few
+ * bulk copies out of a memory-mapped file instead of a JSON parse. Walls are stored in the
+ * {@link CompiledMap} packed layout, followed by spawns, lights, the {@link Pvs} and the
+ * {@link Lightmap}. Written by {@link MapCompiler}.
+ *
+ * Layout, little-endian: a header (magic, version, flags, payload length, CRC32 of the flags and
+ * payload, CRC32 of the JSON source) and the payload it checks. Readers reject other versions rather than guess.
+ */
+public final class MapFile {
+    private static final int MAGIC = 0x50414D4A; // "JMAP"
+    public static final int VERSION = 3;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8;
+    private static final int HAS_PVS = 1;
+    private static final int HAS_LIGHTMAP = 2;
+
+    private MapFile() {}
+
+    /** Memory-map and load a compiled map. */
+    public static MapData read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), -1);
+        }
+    }
+
+    /**
+     * Load a compiled map from {@code buf}. With a non-negative {@code sourceCrc} the map is only
+     * accepted if it was compiled from a source with that checksum, see {@link #sourceCrc(byte[])}.
+     */
+    public static MapData read(ByteBuffer buf, long sourceCrc) throws IOException {
+        ByteBuffer payload = payload(buf, sourceCrc);
+        int flags = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(buf.position() + 8);
+
+        int wallCount = payload.getInt();
+        int floorMaterial = payload.getInt();
+        double ambient = payload.getDouble();
+        int spawnCount = payload.getInt();
+        int lightCount = payload.getInt();
+
+        double[] walls = new double[wallCount * CompiledMap.STRIDE];
+        doubles(payload, walls);
+
+        ArrayList<Pair<Double, Double>> spawns = new ArrayList<>(spawnCount);
+        for (int i = 0; i < spawnCount; ++i) {
+            spawns.add(new Pair<>(payload.getDouble(), payload.getDouble()));
+        }
+        ArrayList<Light> lights = new ArrayList<>(lightCount);
+        for (int i = 0; i < lightCount; ++i) {
+            lights.add(new Light(payload.getDouble(), payload.getDouble(), payload.getDouble(), payload.getDouble()));
+        }
+
+        Pvs pvs = null;
+        if ((flags & HAS_PVS) != 0) {
+            double originX = payload.getDouble();
+            double originY = payload.getDouble();
+            double cellSize = payload.getDouble();
+            int cols = payload.getInt();
+            int rows = payload.getInt();
+            int[] offsets = ints(payload, new int[cols * rows + 1]);
+            int[] cellWalls = ints(payload, new int[payload.getInt()]);
+            pvs = new Pvs(originX, originY, cellSize, cols, rows, wallCount, offsets, cellWalls);
+        }
+
+        Lightmap lightmap = null;
+        if ((flags & HAS_LIGHTMAP) != 0) {
+            int[] wallOffsets = ints(payload, new int[wallCount + 1]);
+            byte[] wallLight = new byte[wallOffsets[wallCount]];
+            payload.get(wallLight);
+            int floorX = payload.getInt();
+            int floorY = payload.getInt();
+            int floorCols = payload.getInt();
+            int floorRows = payload.getInt();
+            byte[] floorLight = new byte[floorCols * floorRows];
+            payload.get(floorLight);
+            int outside = payload.getInt();
+            lightmap = new Lightmap(wallCount, wallOffsets, wallLight, floorX, floorY, floorCols, floorRows, floorLight, outside);
+        }
+
+        return new MapData(new CompiledMap(walls, wallCount, floorMaterial, pvs, lightmap), spawns, lights, ambient);
+    }
+
+    /**
+     * Check a compiled map file without loading it: the header, and the checksum over its payload.
+     * With a non-negative {@code sourceCrc} it must also have been compiled from that source.
+     */
+    public static void verify(Path path, long sourceCrc) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            payload(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), sourceCrc);
+        }
+    }
+
+    // the checked payload behind the header at buf's position
+    private static ByteBuffer payload(ByteBuffer buf, long sourceCrc) throws IOException {
+        buf = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) throw new IOException("Not a compiled map");
+        int version = buf.getInt();
+        if (version != VERSION) throw new IOException("Compiled map version " + version + ", expected " + VERSION);
+        int flags = buf.getInt();
+        int length = buf.getInt();
+        long crc = buf.getLong();
+        long source = buf.getLong();
+        if (sourceCrc >= 0 && source != sourceCrc) throw new IOException("Compiled map is out of date");
+        // the length is not covered by the CRC, so it is checked before it is used
+        if (length < 0) throw new IOException("Compiled map is corrupt");
+        if (buf.remaining() < length) throw new IOException("Compiled map is truncated");
+
+        ByteBuffer payload = buf.slice(buf.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+        if (checksum(flags, payload) != crc) throw new IOException("Compiled map is corrupt");
+        return payload;
+    }
+
+    /** Write {@code map} compiled from a source with checksum {@code sourceCrc}; replaces the file atomically. */
+    public static void write(MapData map, long sourceCrc, Path path) throws IOException {
+        CompiledMap compiled = map.compiled();
+        Pvs pvs = compiled.getPvs();
+        Lightmap lightmap = compiled.getLightmap();
+        int wallCount = compiled.getWallCount();
+
+        long length = 4 + 4 + 8 + 4 + 4
+            + 8L * wallCount * CompiledMap.STRIDE
+            + 16L * map.getSpawns().size()
+            + 32L * map.getLights().size();
+        if (pvs != null) {
+            length += 8 * 3 + 4 * 2 + 4L * pvs.getOffsets().length + 4 + 4L * pvs.getWalls().length;
+        }
+        if (lightmap != null) {
+            length += 4L * (wallCount + 1) + lightmap.getWallLight().length
+                + 4 * 4 + lightmap.getFloorLight().length + 4;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(Math.toIntExact(length)).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putInt(wallCount).putInt(compiled.getFloorMaterial()).putDouble(map.getAmbient());
+        payload.putInt(map.getSpawns().size()).putInt(map.getLights().size());
+        payload.asDoubleBuffer().put(compiled.getWalls(), 0, wallCount * CompiledMap.STRIDE);
+        payload.position(payload.position() + 8 * wallCount * CompiledMap.STRIDE);
+        for (Pair<Double, Double> s : map.getSpawns()) {
+            payload.putDouble(s.getKey()).putDouble(s.getValue());
+        }
+        for (Light l : map.getLights()) {
+            payload.putDouble(l.x).putDouble(l.y).putDouble(l.radius).putDouble(l.intensity);
+        }
+        if (pvs != null) {
+            payload.putDouble(pvs.getOriginX()).putDouble(pvs.getOriginY()).putDouble(pvs.getCellSize());
+            payload.putInt(pvs.getCols()).putInt(pvs.getRows());
+            for (int o : pvs.getOffsets()) payload.putInt(o);
+            payload.putInt(pvs.getWalls().length);
+            for (int w : pvs.getWalls()) payload.putInt(w);
+        }
+        if (lightmap != null) {
+            for (int o : lightmap.getWallOffsets()) payload.putInt(o);
+            payload.put(lightmap.getWallLight());
+            payload.putInt(lightmap.getFloorX()).putInt(lightmap.getFloorY());
+            payload.putInt(lightmap.getFloorCols()).putInt(lightmap.getFloorRows());
+            payload.put(lightmap.getFloorLight());
+            payload.putInt(lightmap.getOutside());
+        }
+        payload.flip();
+
+        int flags = (pvs != null ? HAS_PVS : 0) | (lightmap != null ? HAS_LIGHTMAP : 0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(flags)
+            .putInt(payload.remaining()).putLong(checksum(flags, payload)).putLong(sourceCrc);
+        header.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            while (payload.hasRemaining()) channel.write(payload);
+            // on disk before the rename, or a crash could leave the new name on empty blocks
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Checksum of a map's JSON source, recorded so stale compiled maps can be detected. */
+    public static long sourceCrc(byte[] source) {
+        CRC32 crc = new CRC32();
+        crc.update(source);
+        return crc.getValue();
+    }
+
+    // the flags say how to parse the payload, so they are checked with it
+    private static long checksum(int flags, ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(flags).flip());
+        crc.update(payload.duplicate());
+        return crc.getValue();
+    }
+
+    private static void doubles(ByteBuffer buf, double[] dst) {
+        buf.asDoubleBuffer().get(dst);
+        buf.position(buf.position() + 8 * dst.length);
+    }
+
+    private static int[] ints(ByteBuffer buf, int[] dst) {
+        buf.asIntBuffer().get(dst);
+        buf.position(buf.position() + 4 * dst.length);
+        return dst;
+    }
+}
@@ -0,0 +1,52 @@
+package jangalang.common.maps;
+
+import java.io.Serializable;
+
+/**
+ * Shape of a map's PVS and lightmap without their contents: the grids and how long the packed
+ * arrays are. Sent ahead of a streamed map so {@link MapAssembly} can lay the arrays out once and
+ * fill each chunk's share in place.
+ */
+public final class MapLayout implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // PVS grid; pvsCols is 0 when the map has no PVS
+    public final double pvsOriginX;
+    public final double pvsOriginY;
+    public final double pvsCellSize;
+    public final int pvsCols;
+    public final int pvsRows;
+    public final int pvsEntries;
+    // lightmap; wallSamples is -1 when the map has none
+    public final int wallSamples;
+    public final int floorX;
+    public final int floorY;
+    public final int floorCols;
+    public final int floorRows;
+    public final int outside;
+
+    public MapLayout(CompiledMap map) {
+        Pvs pvs = map.getPvs();
+        Lightmap light = map.getLightmap();
+        this.pvsOriginX = pvs == null ? 0 : pvs.getOriginX();
+        this.pvsOriginY = pvs == null ? 0 : pvs.getOriginY();
+        this.pvsCellSize = pvs == null ? 1 : pvs.getCellSize();
+        this.pvsCols = pvs == null ? 0 : pvs.getCols();
+        this.pvsRows = pvs == null ? 0 : pvs.getRows();
+        this.pvsEntries = pvs == null ? 0 : pvs.getWalls().length;
+        this.wallSamples = light == null ? -1 : light.getWallLight().length;
+        this.floorX = light == null ? 0 : light.getFloorX();
+        this.floorY = light == null ? 0 : light.getFloorY();
+        this.floorCols = light == null ? 0 : light.getFloorCols();
+        this.floorRows = light == null ? 0 : light.getFloorRows();
+        this.outside = light == null ? 255 : light.getOutside();
+    }
+
+    public boolean hasPvs() {
+        return pvsCols > 0;
+    }
+
+    public boolean hasLightmap() {
+        return wallSamples >= 0;
+    }
+}
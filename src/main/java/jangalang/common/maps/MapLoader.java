@@ -5,20 +5,125 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class MapLoader {
+    /**
+     * Load a map resource. A compiled .jmap next to it is used when it was built from this exact
+     * source. Otherwise the JSON is parsed and optimized, and its potentially visible set and
+     * lightmap are read from the .pvs and .light files next to it. A missing or stale lightmap is
+     * baked here; a missing or stale PVS is not computed, the map is drawn without one.
+     */
     public static MapData parseMap(String file) {
+        byte[] source;
+        try (InputStream in = MapLoader.class.getResourceAsStream(file)) {
+            if (in == null) throw new IOException("Missing map " + file);
+            source = in.readAllBytes();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new MapData();
+        }
+
+        String base = file.replaceAll("\\.map$", "");
+        try (InputStream in = MapLoader.class.getResourceAsStream(base + ".jmap")) {
+            if (in != null) {
+                return MapFile.read(ByteBuffer.wrap(in.readAllBytes()), MapFile.sourceCrc(source));
+            }
+        } catch (IOException e) {
+            System.out.println(base + ".jmap: " + e.getMessage() + ", parsing " + file);
+        }
+        return prepare(parseMap(new ByteArrayInputStream(source)), base, MapLoader.class::getResourceAsStream, false);
+    }
+
+    /**
+     * Load a map from the filesystem: a .jmap is memory-mapped directly, a JSON map uses the
+     * compiled .jmap beside it when that is up to date, like {@link #parseMap(String)}.
+     */
+    public static MapData load(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        if (name.endsWith(".jmap")) {
+            return MapFile.read(path);
+        }
+        byte[] source = Files.readAllBytes(path);
+        String base = path.toString().replaceAll("\\.map$", "");
+        Path compiled = Path.of(base + ".jmap");
+        if (Files.isRegularFile(compiled)) {
+            try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+                return MapFile.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), MapFile.sourceCrc(source));
+            } catch (IOException e) {
+                System.out.println(compiled + ": " + e.getMessage() + ", parsing " + path);
+            }
+        }
+        return prepare(parseMap(new ByteArrayInputStream(source)), base, sidecar -> {
+            Path p = Path.of(sidecar);
+            return Files.isRegularFile(p) ? Files.newInputStream(p) : null;
+        }, false);
+    }
+
+    /** Parse, optimize and fully compile a JSON map (PVS and lightmap computed here), e.g. for {@link MapFile}. */
+    public static MapData compile(byte[] source, String name) {
+        return prepare(parseMap(new ByteArrayInputStream(source)), name, sidecar -> null, true);
+    }
+
+    // opens a file next to the map, or returns null if there is none
+    private interface Sidecars {
+        InputStream open(String name) throws IOException;
+    }
+
+    // optimize the walls, then attach the map's PVS and lightmap from its sidecar files, baking a
+    // missing or stale lightmap; the PVS is only computed when compiling, it is too slow for loading
+    private static MapData prepare(MapData result, String base, Sidecars sidecars, boolean computePvs) {
+        MapOptimizer.Stats stats = MapOptimizer.optimize(result);
+        if (stats.wallsAfter != stats.wallsBefore) {
+            System.out.println(base + ": " + stats);
+        }
+        String pvsFile = base + ".pvs";
+        try (InputStream in = sidecars.open(pvsFile)) {
+            if (in != null) {
+                result.setPvs(Pvs.read(in, MapCompiler.geometryKey(result), result.getWallCount()));
+            }
+        } catch (IOException e) {
+            System.out.println(pvsFile + ": " + e.getMessage());
+        }
+        if (result.getPvs() == null) {
+            if (computePvs) {
+                result.setPvs(MapCompiler.computePvs(result, MapCompiler.DEFAULT_CELL_SIZE));
+            } else {
+                System.out.println("No up-to-date " + pvsFile + ", drawing every wall; run MapCompiler to build it");
+            }
+        }
+
+        if (!result.getLights().isEmpty()) {
+            String lightFile = base + ".light";
+            try (InputStream in = sidecars.open(lightFile)) {
+                if (in != null) {
+                    result.setLightmap(Lightmap.read(in, MapCompiler.lightKey(result), result.getWallCount()));
+                }
+            } catch (IOException e) {
+                System.out.println(lightFile + ": " + e.getMessage());
+            }
+            if (result.getLightmap() == null) {
+                System.out.println("No up-to-date " + lightFile + ", baking lights");
+                result.setLightmap(MapCompiler.computeLightmap(result));
+            }
+        }
+        return result;
+    }
+
+    public static MapData parseMap(InputStream in) {
         MapData result = new MapData();
         JSONParser parser = new JSONParser();
 
-        try (
-             InputStream in = MapLoader.class.getResourceAsStream(file);
-             Reader reader = new InputStreamReader(in)
-            ) {
+        try (Reader reader = new InputStreamReader(in)) {
             JSONObject jsonObject = (JSONObject) parser.parse(reader);
 
             // Parse the "spawn" array
@@ -30,6 +135,26 @@ public class MapLoader {
                 result.addSpawn(x, y);
             }
 
+            // Optional floor material
+            Number floor = (Number) jsonObject.get("floor");
+            if (floor != null) {
+                result.setFloorMaterial(floor.intValue());
+            }
+
+            // Optional static lights and the light level they add to
+            JSONArray lightsArray = (JSONArray) jsonObject.get("lights");
+            if (lightsArray != null) {
+                for (Object lightObj : lightsArray) {
+                    JSONObject light = (JSONObject) lightObj;
+                    result.addLight(new Light(((Number) light.get("x")).doubleValue(),
+                                              ((Number) light.get("y")).doubleValue(),
+                                              ((Number) light.get("radius")).doubleValue(),
+                                              ((Number) light.get("intensity")).doubleValue()));
+                }
+                Number ambient = (Number) jsonObject.get("ambient");
+                result.setAmbient(ambient == null ? 0.2 : ambient.doubleValue());
+            }
+
             // Parse the "walls" array
             JSONArray wallsArray = (JSONArray) jsonObject.get("walls");
             for (Object wallObj : wallsArray) {
@@ -40,7 +165,8 @@ public class MapLoader {
                 double x2 = ((Number) wall.get("x2")).doubleValue();
                 double y2 = ((Number) wall.get("y2")).doubleValue();
 
-                result.addWall(new Wall(x1, y1, x2, y2));
+                Number material = (Number) wall.get("material");
+                result.addWall(new Wall(x1, y1, x2, y2, material == null ? Wall.DEFAULT_MATERIAL : material.intValue()));
             }
         } catch (IOException | ParseException e) {
             e.printStackTrace();
@@ -0,0 +1,191 @@
+package jangalang.common.maps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Geometry cleanup run before a map is compiled: welds endpoints closer than a tolerance, drops
+ * zero-length and duplicate walls, and merges runs of collinear walls that join end to start into
+ * one wall. Fewer walls make every collision test, ray and PVS list cheaper.
+ *
+ * Only walls of the same material and direction are merged, and only where the texture lines up:
+ * wall textures repeat every world unit from a wall's start, so a wall is only appended when the
+ * run before it is a whole number of units long. Merged maps therefore render exactly as before.
+ */
+public final class MapOptimizer {
+    public static final double DEFAULT_WELD_DISTANCE = 1e-3;
+    // sine of the largest angle between two walls still treated as collinear
+    private static final double COLLINEAR = 1e-6;
+
+    /** What one {@link #optimize} pass changed. */
+    public static final class Stats {
+        public int wallsBefore;
+        public int wallsAfter;
+        public int welded;      // endpoints moved onto an earlier one
+        public int degenerate;  // walls dropped for having no length
+        public int duplicates;  // walls dropped for repeating another
+        public int merged;      // walls folded into the one before them
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d walls: %d endpoints welded, %d degenerate and %d duplicate walls dropped, %d merged",
+                                 wallsBefore, wallsAfter, welded, degenerate, duplicates, merged);
+        }
+    }
+
+    private MapOptimizer() {}
+
+    public static Stats optimize(MapData map) {
+        return optimize(map, DEFAULT_WELD_DISTANCE);
+    }
+
+    /** Optimize the walls of {@code map} in place; its PVS and lightmap are dropped if anything changed. */
+    public static Stats optimize(MapData map, double weldDistance) {
+        Stats stats = new Stats();
+        List<Wall> walls = map.getWalls();
+        stats.wallsBefore = walls.size();
+
+        // weld: every endpoint snaps to the first endpoint seen within weldDistance
+        Welder welder = new Welder(weldDistance);
+        List<double[]> segments = new ArrayList<>(walls.size()); // x1, y1, x2, y2, material
+        for (Wall w : walls) {
+            double[] a = welder.weld(w.start.getKey(), w.start.getValue());
+            double[] b = welder.weld(w.end.getKey(), w.end.getValue());
+            segments.add(new double[] { a[0], a[1], b[0], b[1], w.material });
+        }
+        stats.welded = welder.moved;
+
+        // drop walls with no length and walls that repeat an earlier one either way round
+        List<double[]> kept = new ArrayList<>(segments.size());
+        Set<List<Double>> seen = new HashSet<>();
+        for (double[] s : segments) {
+            if (Math.hypot(s[2] - s[0], s[3] - s[1]) <= weldDistance) {
+                stats.degenerate++;
+                continue;
+            }
+            boolean forward = s[0] < s[2] || (s[0] == s[2] && s[1] < s[3]);
+            List<Double> key = forward ? List.of(s[0], s[1], s[2], s[3], s[4]) : List.of(s[2], s[3], s[0], s[1], s[4]);
+            if (!seen.add(key)) {
+                stats.duplicates++;
+                continue;
+            }
+            kept.add(s);
+        }
+
+        // merge: link each wall to the one continuing it, then walk the chains from their starts
+        Map<List<Double>, List<Integer>> startingAt = new HashMap<>();
+        for (int i = 0; i < kept.size(); ++i) {
+            startingAt.computeIfAbsent(List.of(kept.get(i)[0], kept.get(i)[1]), k -> new ArrayList<>()).add(i);
+        }
+        final int n = kept.size();
+        int[] next = new int[n];
+        int[] incoming = new int[n];
+        for (int i = 0; i < n; ++i) {
+            next[i] = -1;
+            int candidates = 0;
+            double[] s = kept.get(i);
+            for (int j : startingAt.getOrDefault(List.of(s[2], s[3]), List.of())) {
+                if (j != i && mergeable(s, kept.get(j))) {
+                    candidates++;
+                    next[i] = j;
+                }
+            }
+            // forks are left alone
+            if (candidates != 1) next[i] = -1;
+            else incoming[next[i]]++;
+        }
+        boolean[] continues = new boolean[n];
+        for (int i = 0; i < n; ++i) {
+            // and so are joins
+            if (next[i] >= 0 && incoming[next[i]] > 1) next[i] = -1;
+            if (next[i] >= 0) continues[next[i]] = true;
+        }
+
+        ArrayList<Wall> result = new ArrayList<>(n);
+        boolean[] used = new boolean[n];
+        for (int i = 0; i < n; ++i) {
+            if (continues[i] || used[i]) continue;
+            chain(kept, next, used, i, result, stats);
+        }
+        // anything left would be a loop, which straight walls cannot form; kept rather than lost
+        for (int i = 0; i < n; ++i) {
+            if (!used[i]) chain(kept, next, used, i, result, stats);
+        }
+
+        stats.wallsAfter = result.size();
+        if (stats.wallsAfter != stats.wallsBefore || stats.welded > 0) {
+            map.setWalls(result);
+        }
+        return stats;
+    }
+
+    // emit the chain starting at wall i as as few walls as texture alignment allows
+    private static void chain(List<double[]> kept, int[] next, boolean[] used, int i, List<Wall> out, Stats stats) {
+        double[] first = kept.get(i);
+        double[] last = first;
+        double length = Math.hypot(first[2] - first[0], first[3] - first[1]);
+        used[i] = true;
+        for (int j = next[i]; j >= 0 && !used[j]; j = next[j]) {
+            double[] s = kept.get(j);
+            if (Math.abs(length - Math.rint(length)) > 1e-9) {
+                // the texture would shift on the rest of the run: start a new wall here
+                out.add(wall(first, last));
+                first = s;
+                length = 0;
+            } else {
+                stats.merged++;
+            }
+            used[j] = true;
+            last = s;
+            length += Math.hypot(s[2] - s[0], s[3] - s[1]);
+        }
+        out.add(wall(first, last));
+    }
+
+    private static Wall wall(double[] first, double[] last) {
+        return new Wall(first[0], first[1], last[2], last[3], (int) first[4]);
+    }
+
+    private static boolean mergeable(double[] a, double[] b) {
+        if (a[4] != b[4]) return false;
+        double ax = a[2] - a[0];
+        double ay = a[3] - a[1];
+        double bx = b[2] - b[0];
+        double by = b[3] - b[1];
+        double lengths = Math.hypot(ax, ay) * Math.hypot(bx, by);
+        return ax * bx + ay * by > 0 && Math.abs(ax * by - ay * bx) <= COLLINEAR * lengths;
+    }
+
+    // snaps points to the first point seen within a distance, using a hash grid of that cell size
+    private static final class Welder {
+        private final double distance;
+        private final Map<List<Long>, List<double[]>> cells = new HashMap<>();
+        int moved;
+
+        Welder(double distance) {
+            this.distance = distance;
+        }
+
+        double[] weld(double x, double y) {
+            long cx = (long) Math.floor(x / distance);
+            long cy = (long) Math.floor(y / distance);
+            for (long gx = cx - 1; gx <= cx + 1; ++gx) {
+                for (long gy = cy - 1; gy <= cy + 1; ++gy) {
+                    for (double[] p : cells.getOrDefault(List.of(gx, gy), List.of())) {
+                        if (Math.hypot(p[0] - x, p[1] - y) <= distance) {
+                            if (p[0] != x || p[1] != y) moved++;
+                            return p;
+                        }
+                    }
+                }
+            }
+            double[] p = { x, y };
+            cells.computeIfAbsent(List.of(cx, cy), k -> new ArrayList<>()).add(p);
+            return p;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package jangalang.common.maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Potentially visible set: the map is cut into square cells and each cell lists the walls that can
+ * be seen from anywhere inside it. Built offline by {@link MapCompiler} and shipped with the map.
+ * Wall lists are stored back to back in one array, cell c owning [offsets[c], offsets[c + 1]).
+ */
+public class Pvs implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x4A505653; // "JPVS"
+    private static final int VERSION = 2;
+
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final int wallCount; // walls in the map this was built for
+    private final int[] offsets;
+    private final int[] walls;
+    // cells whose list has arrived while the map streams in, null when every cell is filled
+    private final BitSet filled;
+
+    public Pvs(double originX, double originY, double cellSize, int cols, int rows, int wallCount, int[] offsets, int[] walls) {
+        this(originX, originY, cellSize, cols, rows, wallCount, offsets, walls, null);
+    }
+
+    /** A PVS of which only the {@code filled} cells are usable yet, see {@link MapAssembly}. */
+    Pvs(double originX, double originY, double cellSize, int cols, int rows, int wallCount, int[] offsets, int[] walls,
+        BitSet filled) {
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.wallCount = wallCount;
+        this.offsets = offsets;
+        this.walls = walls;
+        this.filled = filled;
+    }
+
+    /** Cell containing (x, y), or -1 outside the grid or when that cell has not arrived yet. */
+    public int cellAt(double x, double y) {
+        int cx = (int) Math.floor((x - originX) / cellSize);
+        int cy = (int) Math.floor((y - originY) / cellSize);
+        if (cx < 0 || cy < 0 || cx >= cols || cy >= rows) return -1;
+        int cell = cy * cols + cx;
+        return filled == null || filled.get(cell) ? cell : -1;
+    }
+
+    public int start(int cell) {
+        return offsets[cell];
+    }
+
+    public int end(int cell) {
+        return offsets[cell + 1];
+    }
+
+    /** Wall indices of every cell, see {@link #start(int)} and {@link #end(int)}. */
+    public int[] getWalls() {
+        return walls;
+    }
+
+    /** Start of each cell's list in {@link #getWalls()}, plus the end of the last one. */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int getWallCount() {
+        return wallCount;
+    }
+
+    public double getOriginX() {
+        return originX;
+    }
+
+    public double getOriginY() {
+        return originY;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /** Write as a sidecar file for the geometry with checksum {@code geometry}, see {@link MapCompiler#geometryKey}. */
+    public void write(OutputStream out, long geometry) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(geometry);
+        data.writeDouble(originX);
+        data.writeDouble(originY);
+        data.writeDouble(cellSize);
+        data.writeInt(cols);
+        data.writeInt(rows);
+        data.writeInt(wallCount);
+        data.writeInt(walls.length);
+        for (int o : offsets) data.writeInt(o);
+        for (int w : walls) data.writeInt(w);
+        data.flush();
+    }
+
+    /**
+     * Read a sidecar file, rejecting it unless it was written for the geometry with checksum
+     * {@code geometry} and its {@code wallCount} walls. Every count and index is checked, so a
+     * damaged file is an IOException rather than a huge allocation or a bad index while drawing.
+     */
+    public static Pvs read(InputStream in, long geometry, int wallCount) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(in.readAllBytes()));
+        if (data.readInt() != MAGIC) throw new IOException("Not a PVS file");
+        int version = data.readInt();
+        if (version != VERSION) throw new IOException("PVS version " + version + ", expected " + VERSION);
+        if (data.readLong() != geometry) throw new IOException("PVS was computed for other geometry");
+        double originX = data.readDouble();
+        double originY = data.readDouble();
+        double cellSize = data.readDouble();
+        int cols = data.readInt();
+        int rows = data.readInt();
+        if (data.readInt() != wallCount) throw new IOException("PVS was computed for another wall count");
+        int count = data.readInt();
+        // the rest of the file is exactly the offsets and the wall lists
+        if (!Double.isFinite(originX) || !Double.isFinite(originY) || !(cellSize > 0) || !Double.isFinite(cellSize)
+                || cols <= 0 || rows <= 0 || count < 0
+                || 4 * ((long) cols * rows + 1 + count) != data.available()) {
+            throw new IOException("PVS is corrupt");
+        }
+        int[] offsets = new int[cols * rows + 1];
+        int[] walls = new int[count];
+        for (int i = 0; i < offsets.length; ++i) {
+            offsets[i] = data.readInt();
+            if (offsets[i] < (i == 0 ? 0 : offsets[i - 1]) || offsets[i] > count) throw new IOException("PVS is corrupt");
+        }
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != count) throw new IOException("PVS is corrupt");
+        for (int i = 0; i < walls.length; ++i) {
+            walls[i] = data.readInt();
+            if (walls[i] < 0 || walls[i] >= wallCount) throw new IOException("PVS is corrupt");
+        }
+        return new Pvs(originX, originY, cellSize, cols, rows, wallCount, offsets, walls);
+    }
+}
@@ -6,9 +6,12 @@ import jangalang.common.types.Pair;
 
 public class Wall implements Serializable {
     private static final long serialVersionUID = 1L;
+    // material used when a map does not name one; an index into the client's wall textures
+    public static final int DEFAULT_MATERIAL = 1;
 
     public Pair<Double, Double> start;
     public Pair<Double, Double> end;
+    public int material = DEFAULT_MATERIAL;
 
     public Wall(Pair<Double, Double> start, Pair<Double, Double> end) {
         this.start = start;
@@ -20,9 +23,15 @@ public class Wall implements Serializable {
         this.end = new Pair<Double, Double>(x2, y2);
     }
 
+    public Wall(Double x1, Double y1, Double x2, Double y2, int material) {
+        this(x1, y1, x2, y2);
+        this.material = material;
+    }
+
     public Wall(Wall w) {
         this.start = w.start;
         this.end = w.end;
+        this.material = w.material;
     }
 
     public boolean playerIntersect(double cx, double cy, double radius) {
@@ -0,0 +1,178 @@
+package jangalang.common.maps;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid over a map's walls for offline ray casting: each grid cell lists the walls
+ * crossing it, and rays step from cell to cell (Amanatides-Woo) only until the nearest hit is known,
+ * so a ray costs the walls along its path rather than every wall in the map.
+ */
+final class WallGrid {
+    private final CompiledMap map;
+    private final double[] walls;
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final int[] offsets;
+    private final int[] cellWalls;
+    // the ray each wall was last tested by, so walls in several cells are tested once per ray
+    private final int[] testedBy;
+    private int ray = 0;
+
+    WallGrid(CompiledMap map) {
+        this.map = map;
+        this.walls = map.getWalls();
+        final int n = map.getWallCount();
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            int o = i * CompiledMap.STRIDE;
+            minX = Math.min(minX, Math.min(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]));
+            minY = Math.min(minY, Math.min(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]));
+            maxX = Math.max(maxX, Math.max(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]));
+            maxY = Math.max(maxY, Math.max(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]));
+        }
+        if (n == 0) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+        // about two walls per cell on an evenly filled map
+        double size = Math.sqrt(Math.max(maxX - minX, 1) * Math.max(maxY - minY, 1) / Math.max(n, 1)) * 1.5;
+        this.cellSize = Math.max(size, 0.25);
+        this.originX = minX - cellSize;
+        this.originY = minY - cellSize;
+        this.cols = (int) ((maxX - originX) / cellSize) + 2;
+        this.rows = (int) ((maxY - originY) / cellSize) + 2;
+
+        // count the walls per cell, then fill the lists
+        this.offsets = new int[cols * rows + 1];
+        for (int i = 0; i < n; ++i) {
+            forEachCell(i, c -> offsets[c + 1]++);
+        }
+        for (int c = 0; c < cols * rows; ++c) offsets[c + 1] += offsets[c];
+        this.cellWalls = new int[offsets[cols * rows]];
+        int[] fill = Arrays.copyOf(offsets, offsets.length);
+        for (int i = 0; i < n; ++i) {
+            final int wall = i;
+            forEachCell(i, c -> cellWalls[fill[c]++] = wall);
+        }
+        this.testedBy = new int[n];
+        Arrays.fill(testedBy, -1);
+    }
+
+    // every cell wall i crosses; boxes are grown a little so rounding never drops a grazing wall
+    private void forEachCell(int i, IntConsumer out) {
+        int o = i * CompiledMap.STRIDE;
+        double eps = cellSize * 1e-6;
+        int cx0 = col(Math.min(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]) - eps);
+        int cx1 = col(Math.max(walls[o + CompiledMap.X1], walls[o + CompiledMap.X2]) + eps);
+        int cy0 = row(Math.min(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]) - eps);
+        int cy1 = row(Math.max(walls[o + CompiledMap.Y1], walls[o + CompiledMap.Y2]) + eps);
+        for (int cy = cy0; cy <= cy1; ++cy) {
+            for (int cx = cx0; cx <= cx1; ++cx) {
+                double x0 = originX + cx * cellSize;
+                double y0 = originY + cy * cellSize;
+                if (crossesBox(o, x0 - eps, y0 - eps, x0 + cellSize + eps, y0 + cellSize + eps)) {
+                    out.accept(cy * cols + cx);
+                }
+            }
+        }
+    }
+
+    private int col(double x) {
+        return Math.min(cols - 1, Math.max(0, (int) Math.floor((x - originX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((y - originY) / cellSize)));
+    }
+
+    /** Same result as {@link CompiledMap#castRay}: the first wall hit by the ray, or -1. Not thread-safe. */
+    int castRay(double x, double y, double dx, double dy) {
+        ray++;
+        int cx = (int) Math.floor((x - originX) / cellSize);
+        int cy = (int) Math.floor((y - originY) / cellSize);
+        if (cx < 0 || cy < 0 || cx >= cols || cy >= rows) {
+            // rays from outside the walls' bounds are rare offline; test them the slow way
+            return map.castRay(x, y, dx, dy);
+        }
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double nextX = originX + (cx + (dx > 0 ? 1 : 0)) * cellSize;
+        double nextY = originY + (cy + (dy > 0 ? 1 : 0)) * cellSize;
+        double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY : (nextX - x) / dx;
+        double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY : (nextY - y) / dy;
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+
+        int best = -1;
+        double closest = Double.POSITIVE_INFINITY;
+        while (true) {
+            int c = cy * cols + cx;
+            for (int k = offsets[c]; k < offsets[c + 1]; ++k) {
+                int i = cellWalls[k];
+                if (testedBy[i] == ray) continue;
+                testedBy[i] = ray;
+                double u = CompiledMap.rayParam(walls, i * CompiledMap.STRIDE, x, y, dx, dy);
+                if (u < closest || (u == closest && i < best)) {
+                    closest = u;
+                    best = i;
+                }
+            }
+            // nothing in a later cell can be nearer than a hit inside this one
+            double exit = Math.min(tMaxX, tMaxY);
+            if (closest < exit) return best;
+            if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cy += stepY;
+                tMaxY += tDeltaY;
+            }
+            if (cx < 0 || cy < 0 || cx >= cols || cy >= rows) return best;
+        }
+    }
+
+    /** Walls crossing the box [x0, x1] x [y0, y1], each once, passed to {@code out}. */
+    void wallsIn(double x0, double y0, double x1, double y1, IntConsumer out) {
+        ray++;
+        for (int cy = row(y0); cy <= row(y1); ++cy) {
+            for (int cx = col(x0); cx <= col(x1); ++cx) {
+                int c = cy * cols + cx;
+                for (int k = offsets[c]; k < offsets[c + 1]; ++k) {
+                    int i = cellWalls[k];
+                    if (testedBy[i] == ray) continue;
+                    testedBy[i] = ray;
+                    if (crossesBox(i * CompiledMap.STRIDE, x0, y0, x1, y1)) out.accept(i);
+                }
+            }
+        }
+    }
+
+    // segment at offset o against an axis-aligned box: an endpoint inside, or crossing an edge
+    private boolean crossesBox(int o, double x0, double y0, double x1, double y1) {
+        double ax = walls[o + CompiledMap.X1], ay = walls[o + CompiledMap.Y1];
+        double bx = walls[o + CompiledMap.X2], by = walls[o + CompiledMap.Y2];
+        if (inside(ax, ay, x0, y0, x1, y1) || inside(bx, by, x0, y0, x1, y1)) return true;
+        return segments(ax, ay, bx, by, x0, y0, x1, y0) || segments(ax, ay, bx, by, x1, y0, x1, y1)
+            || segments(ax, ay, bx, by, x1, y1, x0, y1) || segments(ax, ay, bx, by, x0, y1, x0, y0);
+    }
+
+    private static boolean inside(double x, double y, double x0, double y0, double x1, double y1) {
+        return x >= x0 && x <= x1 && y >= y0 && y <= y1;
+    }
+
+    static boolean segments(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy) {
+        double rx = bx - ax, ry = by - ay;
+        double sx = dx - cx, sy = dy - cy;
+        double denom = rx * sy - ry * sx;
+        if (denom == 0) return false;
+        double qx = cx - ax, qy = cy - ay;
+        double t = (qx * sy - qy * sx) / denom;
+        double u = (qx * ry - qy * rx) / denom;
+        return t >= 0 && t <= 1 && u >= 0 && u <= 1;
+    }
+}
@@ -2,16 +2,32 @@ package jangalang.common.net.messages;
 
 import java.io.Serializable;
 import jangalang.common.maps.MapData;
+import jangalang.common.maps.MapLayout;
 
 public class HandshakeResponse implements Serializable {
     private static final long serialVersionUID = 1L;
     public final int assignedId;
     public final int serverUdpPort;
+    public final String mapName;
     public final MapData map;
+    public final int round;
+    // walls still to come as MapChunks for this round; 0 when map is complete
+    public final int streamedWalls;
+    // shape of the PVS and lightmap streamed with the walls; null when map is complete
+    public final MapLayout layout;
 
-    public HandshakeResponse(int assignedId, int serverUdpPort, MapData map) {
+    public HandshakeResponse(int assignedId, int serverUdpPort, String mapName, MapData map) {
+        this(assignedId, serverUdpPort, mapName, map, 0, 0, null);
+    }
+
+    public HandshakeResponse(int assignedId, int serverUdpPort, String mapName, MapData map, int round, int streamedWalls,
+                             MapLayout layout) {
         this.assignedId = assignedId;
         this.serverUdpPort = serverUdpPort;
+        this.mapName = mapName;
         this.map = map;
+        this.round = round;
+        this.streamedWalls = streamedWalls;
+        this.layout = layout;
     }
 }
@@ -0,0 +1,32 @@
+package jangalang.common.net.messages;
+
+import java.io.Serializable;
+import jangalang.common.maps.MapData;
+import jangalang.common.maps.MapLayout;
+
+/**
+ * The server moved on to another map between rounds; sent over the reliable channel. Players have
+ * already been respawned on it, so the next snapshots place them on the new map.
+ */
+public class MapChange implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int round;
+    public final String name;
+    public final MapData map;
+    // walls still to come as MapChunks; 0 when map is complete
+    public final int streamedWalls;
+    // shape of the PVS and lightmap streamed with the walls; null when map is complete
+    public final MapLayout layout;
+
+    public MapChange(int round, String name, MapData map) {
+        this(round, name, map, 0, null);
+    }
+
+    public MapChange(int round, String name, MapData map, int streamedWalls, MapLayout layout) {
+        this.round = round;
+        this.name = name;
+        this.map = map;
+        this.streamedWalls = streamedWalls;
+        this.layout = layout;
+    }
+}
@@ -0,0 +1,49 @@
+package jangalang.common.net.messages;
+
+import java.io.Serializable;
+
+/**
+ * Part of a map streamed over the reliable channel after the handshake or a MapChange, nearest
+ * chunks first. Walls are in the CompiledMap packed layout with their index in the full map, and
+ * come with their share of the PVS and lightmap: their own light, the PVS cells and the floor
+ * light under the chunk. Positions in the full arrays follow the {@link jangalang.common.maps.MapLayout}
+ * sent ahead of the stream. Lists are back to back like the Pvs, item k owning [offsets[k], offsets[k + 1]).
+ */
+public class MapChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int round;
+    public final int[] indices;
+    public final double[] walls;
+    // light of each wall, placed at lightStarts[k] in the full lightmap; null without a lightmap
+    public final int[] lightStarts;
+    public final int[] lightOffsets;
+    public final byte[] wallLight;
+    // PVS cells (x0, y0)-(x1, y1) exclusive, row by row, each list placed at cellStarts[k]; null without a PVS
+    public final int[] pvsRect;
+    public final int[] cellStarts;
+    public final int[] cellOffsets;
+    public final int[] cellWalls;
+    // floor light cells (x0, y0)-(x1, y1) exclusive, row by row; null without a lightmap
+    public final int[] floorRect;
+    public final byte[] floorLight;
+    // the last chunk of this round
+    public final boolean last;
+
+    public MapChunk(int round, int[] indices, double[] walls, int[] lightStarts, int[] lightOffsets, byte[] wallLight,
+                    int[] pvsRect, int[] cellStarts, int[] cellOffsets, int[] cellWalls,
+                    int[] floorRect, byte[] floorLight, boolean last) {
+        this.round = round;
+        this.indices = indices;
+        this.walls = walls;
+        this.lightStarts = lightStarts;
+        this.lightOffsets = lightOffsets;
+        this.wallLight = wallLight;
+        this.pvsRect = pvsRect;
+        this.cellStarts = cellStarts;
+        this.cellOffsets = cellOffsets;
+        this.cellWalls = cellWalls;
+        this.floorRect = floorRect;
+        this.floorLight = floorLight;
+        this.last = last;
+    }
+}
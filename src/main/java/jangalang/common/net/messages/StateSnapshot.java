@@ -4,13 +4,17 @@ import java.io.Serializable;
 import jangalang.common.PlayerState;
 
 public class StateSnapshot implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    public final long sequence;
     public final long serverTick;
     public final PlayerState[] players;
     public final int ackClientId;
     public final long ackClientTick;
+    // local arrival time (System.nanoTime), stamped by the receiver; not part of the wire format
+    public transient long receivedNanos;
 
-    public StateSnapshot(long serverTick, PlayerState[] players, int ackClientId, long ackClientTick) {
+    public StateSnapshot(long sequence, long serverTick, PlayerState[] players, int ackClientId, long ackClientTick) {
+        this.sequence = sequence;
         this.serverTick = serverTick;
         this.players = players;
         this.ackClientId = ackClientId;
@@ -25,7 +25,10 @@ public class GameLoop {
 
         executor.scheduleAtFixedRate(() -> {
             try {
-                Window.getRenderer().repaint();
+                // static screens stay on screen without being repainted
+                if (Game.getMode().isDirty()) {
+                    Window.getRenderer().repaint();
+                }
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -12,4 +12,9 @@ public interface GameMode {
     void keyReleased(KeyEvent e);
     void mouseClicked(MouseEvent e);
     void mouseMoved(int e);
+
+    /** Whether the next frame would differ from the last one; the loop skips repaints otherwise. */
+    default boolean isDirty() {
+        return true;
+    }
 }
@@ -3,47 +3,27 @@ package jangalang.engine.gamemode;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import javax.swing.JPanel;
 
 import jangalang.engine.GameState;
 import jangalang.engine.Game;
 
-public class HelpState implements GameMode {
-    @Override
-    public void update() {}
+public class HelpState extends StaticScreenState {
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 36);
+    private static final Font OPTION_FONT = new Font("Arial", Font.PLAIN, 24);
+    private static final String[] TITLE = { "Jangalang" };
+    private static final String[] OPTIONS = {
+        "Use WASD to move",
+        "Look around with your mouse",
+        "Press 1 to return to Main Menu"
+    };
 
     @Override
-    public void render(JPanel window, Graphics g) {
-        window.setBackground(Color.BLACK);
-
-        String title = "Jangalang";
-        String[] options = {
-            "Use WASD to move",
-            "Look around with your mouse",
-            "Press 1 to return to Main Menu"
-        };
-
-        g.setFont(new Font("Arial", Font.BOLD, 36));
+    protected void paintScreen(Graphics2D g, int width, int height) {
         g.setColor(Color.WHITE);
-
-        FontMetrics fm = g.getFontMetrics();
-        int titleWidth = fm.stringWidth(title);
-        int x = (window.getWidth() - titleWidth) / 2;
-        int y = window.getHeight() / 4;
-        g.drawString(title, x, y);
-
-        g.setFont(new Font("Arial", Font.PLAIN, 24));
-        fm = g.getFontMetrics();
-        int lineHeight = fm.getHeight();
-        int startY = window.getHeight() / 2;
-
-        for (int i = 0; i < options.length; i++) {
-            String option = options[i];
-            int optionWidth = fm.stringWidth(option);
-            int optionX = (window.getWidth() - optionWidth) / 2;
-            int optionY = startY + (i * lineHeight * 2);
-            g.drawString(option, optionX, optionY);
-        }
+        g.setFont(TITLE_FONT);
+        drawCentred(g, TITLE, width, height / 4);
+        g.setFont(OPTION_FONT);
+        drawCentred(g, OPTIONS, width, height / 2);
     }
 
     @Override
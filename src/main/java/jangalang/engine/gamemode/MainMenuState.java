@@ -3,45 +3,27 @@ package jangalang.engine.gamemode;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
-
-import javax.swing.JPanel;
 
 import jangalang.engine.GameState;
 import jangalang.engine.Game;
 
-public class MainMenuState implements GameMode {
+public class MainMenuState extends StaticScreenState {
     private static final int splashScreenIndx = (int)(Math.random() * 10) % 3;
-    @Override
-    public void update() {
-    }
+    private static final Font OPTION_FONT = new Font("Arial", Font.BOLD, 24);
+    private static final String[] OPTIONS = {
+        "1. Start Game",
+        "2. Controls/Info",
+        "3. Quit"
+    };
 
     @Override
-    public void render(JPanel window, Graphics g) {
-        window.setBackground(Color.BLACK); // Fallback
-        BufferedImage splashScreen = Game.splashScreens[splashScreenIndx];
-        g.drawImage(splashScreen, 0, 0, window.getWidth(), window.getHeight(), null);
+    protected void paintScreen(Graphics2D g, int width, int height) {
+        // the splash is scaled to the screen once, not on every repaint
+        g.drawImage(Game.splashScreens[splashScreenIndx], 0, 0, width, height, null);
 
-        String[] options = {
-            "1. Start Game",
-            "2. Controls/Info",
-            "3. Quit"
-        };
-
-        FontMetrics fm = g.getFontMetrics();
-        g.setFont(new Font("Arial", Font.BOLD, 24));
+        g.setFont(OPTION_FONT);
         g.setColor(Color.WHITE);
-        fm = g.getFontMetrics();
-        int lineHeight = fm.getHeight();
-        int startY = (int)(window.getHeight() * 0.7);
-
-        for (int i = 0; i < options.length; i++) {
-            String option = options[i];
-            int optionWidth = fm.stringWidth(option);
-            int optionX = (window.getWidth() - optionWidth) / 2;
-            int optionY = startY + (i * lineHeight * 2);
-            g.drawString(option, optionX, optionY);
-        }
+        drawCentred(g, OPTIONS, width, (int)(height * 0.7));
     }
 
     @Override
@@ -0,0 +1,69 @@
+package jangalang.engine.gamemode;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import javax.swing.JPanel;
+
+/**
+ * Base for screens whose picture only changes on resize or when their content changes (menus,
+ * help, pause). The screen is painted once into a cached screen-sized compatible image and every
+ * repaint after that is a single blit; {@link #isDirty()} stays false until {@link #invalidate()}
+ * so the game loop can skip repainting altogether.
+ */
+public abstract class StaticScreenState implements GameMode {
+    private BufferedImage cache;
+    private volatile boolean dirty = true;
+
+    /** Paint the whole screen; called only when the cache is rebuilt. */
+    protected abstract void paintScreen(Graphics2D g, int width, int height);
+
+    /** Content changed: rebuild the cache on the next repaint. */
+    protected void invalidate() {
+        cache = null;
+        dirty = true;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void update() {}
+
+    @Override
+    public void render(JPanel window, Graphics g) {
+        final int w = window.getWidth();
+        final int h = window.getHeight();
+        if (w <= 0 || h <= 0) return;
+        if (cache == null || cache.getWidth() != w || cache.getHeight() != h) {
+            GraphicsConfiguration gc = window.getGraphicsConfiguration();
+            cache = gc != null ? gc.createCompatibleImage(w, h) : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D cg = cache.createGraphics();
+            try {
+                cg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                cg.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                cg.setColor(Color.BLACK);
+                cg.fillRect(0, 0, w, h);
+                paintScreen(cg, w, h);
+            } finally {
+                cg.dispose();
+            }
+        }
+        g.drawImage(cache, 0, 0, null);
+        dirty = false;
+    }
+
+    // lines centred horizontally, starting at baseline y, spaced two line heights apart
+    protected static void drawCentred(Graphics2D g, String[] lines, int width, int y) {
+        int lineHeight = g.getFontMetrics().getHeight();
+        for (int i = 0; i < lines.length; i++) {
+            int x = (width - g.getFontMetrics().stringWidth(lines[i])) / 2;
+            g.drawString(lines[i], x, y + (i * lineHeight * 2));
+        }
+    }
+}
@@ -7,41 +7,30 @@ import java.io.Serializable;
 import javax.imageio.ImageIO;
 
 import jangalang.common.maps.MapData;
-import jangalang.common.maps.Wall;
 import jangalang.common.ApplicationProperties;
-import jangalang.common.types.Vector;
+import jangalang.common.Movement;
 
 public class Player implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private double xCoord;
-    private double yCoord;
+    private final double[] state = new double[Movement.STATE_SIZE];
     private final int size = 1;
 
-    private double velX = 0;
-    private double velY = 0;
-
-    private static final double ACCEL = 0.01;
-    private static final double MAX_SPEED = 0.3;
-    private static final double FRICTION = 0.9;
-
     public static double RAY_MAX_LENGTH = ApplicationProperties.getDouble("game.user.viewdist");
-    public static int RAY_COUNT = ApplicationProperties.getInt("game.user.resolution");
     public static double FOV = Math.toRadians(ApplicationProperties.getInt("game.user.fov"));
+    // camera plane length: the plane spans [-1, 1] * PLANE_SCALE across the screen
+    private static final double PLANE_SCALE = Math.tan(FOV / 2.0);
 
-    private Vector[] rays = new Vector[RAY_COUNT];
-    private double viewAngleOffset = 0;
+    // only the view angle is state; the camera vectors are derived from it once per rotation
+    private double viewAngle = 0;
+    private double dirX = 1;
+    private double dirY = 0;
 
     private transient BufferedImage weaponSprite;
 
     public Player (double xCoord, double yCoord) {
-        this.xCoord = xCoord;
-        this.yCoord = yCoord;
-
-        for (int i = 0; i < rays.length; ++i) {
-            final double angle = this.viewAngleOffset - FOV / 2 + (FOV * i / (RAY_COUNT - 1));
-            rays[i] = new Vector(Math.cos(angle), Math.sin(angle));
-        }
+        this.state[Movement.X] = xCoord;
+        this.state[Movement.Y] = yCoord;
 
         try (InputStream in = Player.class.getResourceAsStream("/sprites/guns/pistol/2PISA0.png")) {
             this.weaponSprite = ImageIO.read(in);
@@ -51,89 +40,47 @@ public class Player implements Serializable {
 
     }
 
-    public void move(MapData gameMap, double dirX, double dirY, boolean accelerating) {
-        if (accelerating) {
-            // Normalize direction
-            double len = Math.sqrt(dirX * dirX + dirY * dirY);
-            if (len > 0) {
-                dirX /= len;
-                dirY /= len;
-            }
-
-            velX += dirX * ACCEL;
-            velY += dirY * ACCEL;
-
-            double speed = Math.sqrt(velX * velX + velY * velY);
-            if (speed > MAX_SPEED) {
-                velX = (velX / speed) * MAX_SPEED;
-                velY = (velY / speed) * MAX_SPEED;
-            }
-        } else {
-            velX *= FRICTION;
-            velY *= FRICTION;
-        }
-
-        double newX = this.xCoord + velX;
-        double newY = this.yCoord + velY;
-        double radius = this.size / 2.0;
-
-        for (Wall wall : gameMap.getWalls()) {
-            if (wall.playerIntersect(newX, newY, radius)) {
-                // --- Sliding instead of stopping ---
-                // 1. Get the wall's normal vector
-
-                double[] n = wall.getNormal(); // must be unit length!
-                double nx = n[0];
-                double ny = n[1];
-
-                // 2. Project velocity onto tangent = v - (v·n)n
-                double dot = velX * nx + velY * ny;
-                velX = velX - dot * nx;
-                velY = velY - dot * ny;
-
-                // 3. Recompute position using adjusted velocity
-                newX = this.xCoord + velX;
-                newY = this.yCoord + velY;
-
-                break; // only need first blocking wall this frame
-            }
-        }
-        this.xCoord = newX;
-        this.yCoord = newY;
+    public void move(MapData gameMap, int actions) {
+        Movement.step(state, actions, this.viewAngle, gameMap.compiled());
     }
 
     public double getXCoord() {
-        return this.xCoord;
+        return this.state[Movement.X];
     }
 
     public double getYCoord() {
-        return this.yCoord;
+        return this.state[Movement.Y];
     }
 
     public int getSize() {
         return this.size;
     }
 
-    public Vector getViewAngle() {
-        return rays[RAY_COUNT / 2]; // center ray
+    public double getViewAngle() {
+        return this.viewAngle;
     }
 
-    public Vector[] getRays() {
-        return this.rays;
+    public double getDirX() {
+        return this.dirX;
     }
 
-    public void updateRay(int index, Vector v) {
-        this.rays[index] = v;
+    public double getDirY() {
+        return this.dirY;
     }
 
-    public void rotate(double angleDelta) {
-        this.viewAngleOffset += angleDelta;
+    // camera plane, perpendicular to the view direction; column rays are dir + plane * cameraX
+    public double getPlaneX() {
+        return -this.dirY * PLANE_SCALE;
+    }
 
-        for (int i = 0; i < rays.length; ++i) {
-            final double angle = this.viewAngleOffset - FOV / 2.0 + (FOV * i / (RAY_COUNT - 1));
-            this.rays[i].x = Math.cos(angle);
-            this.rays[i].y = Math.sin(angle);
-        }
+    public double getPlaneY() {
+        return this.dirX * PLANE_SCALE;
+    }
+
+    public void rotate(double angleDelta) {
+        this.viewAngle += angleDelta;
+        this.dirX = Math.cos(this.viewAngle);
+        this.dirY = Math.sin(this.viewAngle);
     }
 
     public BufferedImage getWeaponSprite() {
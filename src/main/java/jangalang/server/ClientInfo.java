@@ -4,11 +4,14 @@ import java.net.InetAddress;
 
 public class ClientInfo {
     public final int id;
+    public final ServerTransport transport;
+    // UDP endpoint; unused by in-process transports
     public final InetAddress addr;
     public final int udpPort;
 
-    public ClientInfo(int id, InetAddress addr, int udpPort) {
+    public ClientInfo(int id, ServerTransport transport, InetAddress addr, int udpPort) {
         this.id = id;
+        this.transport = transport;
         this.addr = addr;
         this.udpPort = udpPort;
     }
@@ -1,70 +1,146 @@
 package jangalang.server;
 
+import jangalang.common.maps.MapCatalog;
 import jangalang.common.maps.MapData;
-import jangalang.common.maps.Wall;
 import jangalang.common.ApplicationProperties;
 import jangalang.common.net.messages.StateSnapshot;
 import jangalang.common.net.messages.InputPacket;
+import jangalang.common.net.messages.MapChange;
 import jangalang.common.PlayerState;
 
-import java.io.*;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.SocketException;
 import java.util.concurrent.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Authoritative server: holds players map, applies inputs, broadcasts state snapshots via UDP.
+ * Authoritative server: holds players map, applies inputs, broadcasts state snapshots through
+ * whichever ServerTransports clients connected by. With a rotation it moves to the next map of a
+ * {@link MapCatalog} every round, without restarting.
  */
 public class GameServer {
-    private final MapData map;
-    private final int udpPort;
-    private DatagramSocket udpSocket;
+    // replaced only on the tick thread
+    private volatile MapData map;
+    private volatile String mapName = "";
+    // written after map, so a reader seeing a round also sees its map
+    private volatile int round = 0;
+
+    // map rotation, off without a catalog
+    private MapCatalog catalog;
+    private List<String> rotation = List.of();
+    private long ticksPerRound = 0;
+    private long roundTicks = 0;
+
+    private final List<ServerTransport> transports = new CopyOnWriteArrayList<>();
     private final ScheduledExecutorService tickExecutor = Executors.newSingleThreadScheduledExecutor();
-    private final ExecutorService udpReceiverExecutor = Executors.newSingleThreadExecutor();
     private final ConcurrentMap<Integer, ClientInfo> clients = new ConcurrentHashMap<>();
     private final AtomicInteger nextId = new AtomicInteger(1);
 
+    // snapshots go out every snapshotDivisor ticks; clients interpolate between them
+    private int snapshotDivisor = 1;
+    private long tickCount = 0;
+    // increases by one per broadcast so clients can discard late or reordered datagrams
+    private long snapshotSequence = 0;
+
     // authoritative per-client state
     private final ConcurrentMap<Integer, ServerPlayer> players = new ConcurrentHashMap<>();
 
     // input buffer keyed by client id containing a queue of InputPackets
     private final ConcurrentMap<Integer, ConcurrentLinkedQueue<InputPacket>> inputQueues = new ConcurrentHashMap<>();
 
-    public GameServer(MapData map, int udpPort) {
+    public GameServer(String mapName, MapData map) {
         this.map = map;
-        System.out.println(map.toString());
-        this.udpPort = udpPort;
-        try {
-            this.udpSocket = new DatagramSocket(udpPort);
-        } catch (SocketException se) {
-            se.printStackTrace();
-        }
+        this.mapName = mapName;
+        System.out.printf("Map %s: %d walls, %d spawns%n", mapName, map.getWallCount(), map.getSpawns().size());
     }
 
     public MapData getMap() {
         return map;
     }
 
-    public int getUdpPort() {
-        return udpPort;
+    public String getMapName() {
+        return mapName;
+    }
+
+    /** Number of map changes so far; read it before {@link #getMap()} to get a round no newer than the map. */
+    public int getRound() {
+        return round;
+    }
+
+    /** Where client {@code id}'s player is, or null if it is not connected. */
+    public double[] getPlayerPosition(int id) {
+        ServerPlayer sp = players.get(id);
+        return sp == null ? null : new double[] { sp.getXCoord(), sp.getYCoord() };
+    }
+
+    /**
+     * Play the catalog's maps in {@code order}, starting over after the last, switching every
+     * {@code roundSeconds}; the current map should be {@code order.get(0)}. Call before {@link #start()}.
+     */
+    public void setRotation(MapCatalog catalog, List<String> order, int roundSeconds) {
+        this.catalog = catalog;
+        this.rotation = List.copyOf(order);
+        this.mapName = order.isEmpty() ? "" : order.get(0);
+        this.ticksPerRound = (long) roundSeconds * ApplicationProperties.getInt("game.tps");
+    }
+
+    /** Switch to a catalog map at the next tick; players are respawned on it. */
+    public void changeMap(String name) {
+        tickExecutor.execute(() -> loadMap(name));
+    }
+
+    private void loadMap(String name) {
+        try {
+            long start = System.nanoTime();
+            MapData next = catalog.load(name);
+            applyMap(name, next);
+            System.out.printf("Round %d: map %s (%d walls), switched in %.1f ms%n",
+                              round, name, next.getWallCount(), (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            System.out.println("Cannot load map " + name + ", staying on " + mapName + ": " + e.getMessage());
+        }
     }
 
-    public int registerClient(InetAddress addr, int clientUdpPort) {
+    // tick thread only: swap the map, put everyone on a spawn and tell the clients
+    private void applyMap(String name, MapData next) {
+        this.map = next;
+        this.mapName = name;
+        this.round++;
+        int slot = 0;
+        for (ServerPlayer sp : players.values()) {
+            double[] spawn = spawnFor(slot++);
+            sp.respawn(spawn[0], spawn[1]);
+            ConcurrentLinkedQueue<InputPacket> q = inputQueues.get(sp.id);
+            // inputs still in flight were aimed at the old map
+            if (q != null) q.clear();
+        }
+        MapChange change = new MapChange(round, name, next);
+        for (ClientInfo ci : clients.values()) {
+            ci.transport.sendMapChange(ci, change);
+        }
+    }
+
+    // the slot-th spawn of the current map, or the origin when it has too few
+    private double[] spawnFor(int slot) {
+        MapData current = map;
+        if (slot < current.getSpawns().size()) {
+            return new double[] { current.getSpawns().get(slot).getKey(), current.getSpawns().get(slot).getValue() };
+        }
+        return new double[] { 0, 0 };
+    }
+
+    /** Add a transport clients can connect through; call before {@link #start()}. */
+    public void addTransport(ServerTransport transport) {
+        transports.add(transport);
+    }
+
+    public int registerClient(ServerTransport transport, InetAddress addr, int clientUdpPort) {
         int id = nextId.getAndIncrement();
-        clients.put(id, new ClientInfo(id, addr, clientUdpPort));
+        clients.put(id, new ClientInfo(id, transport, addr, clientUdpPort));
         // spawn
-        double sx = 0;
-        double sy = 0;
-        if (!map.getSpawns().isEmpty() && clients.size() <= map.getSpawns().size()) {
-            // Subtracting 1 because ids begin at 1
-            sx = map.getSpawns().get(clients.size() - 1).getKey();
-            sy = map.getSpawns().get(clients.size() - 1).getValue();
-        }
-        ServerPlayer sp = new ServerPlayer(id, sx, sy);
+        double[] spawn = spawnFor(clients.size() - 1);
+        ServerPlayer sp = new ServerPlayer(id, spawn[0], spawn[1]);
         players.put(id, sp);
         inputQueues.put(id, new ConcurrentLinkedQueue<>());
 
@@ -79,48 +155,38 @@ public class GameServer {
         System.out.println("Unregistered client " + id);
     }
 
+    /** Queue a client's input for the next tick; called from transport threads. */
+    public void receiveInput(InputPacket ip) {
+        ConcurrentLinkedQueue<InputPacket> q = inputQueues.get(ip.clientId);
+        if (q != null) q.add(ip);
+    }
+
     public void start() {
-        // start UDP receiver
-        udpReceiverExecutor.submit(this::udpReceiveLoop);
+        for (ServerTransport transport : transports) {
+            transport.start(this);
+        }
 
         long tps = ApplicationProperties.getInt("game.tps");
         long tickMs = 1000L / tps;
+        int snapshotRate = Integer.parseInt(ApplicationProperties.getOrDefault("server.snapshotrate", String.valueOf(tps)));
+        snapshotDivisor = (int) Math.max(1, tps / Math.max(1, snapshotRate));
         tickExecutor.scheduleAtFixedRate(this::tick, 0, tickMs, TimeUnit.MILLISECONDS);
-        System.out.println("Game server started (tps=" + tps + ")");
+        System.out.println("Game server started (tps=" + tps + ", snapshots every " + snapshotDivisor + " ticks)");
     }
 
     public void stop() {
         tickExecutor.shutdownNow();
-        udpReceiverExecutor.shutdownNow();
-        udpSocket.close();
-    }
-
-    private void udpReceiveLoop() {
-        byte[] buf = new byte[4096];
-        DatagramPacket p = new DatagramPacket(buf, buf.length);
-        while (!udpSocket.isClosed()) {
-            try {
-                udpSocket.receive(p);
-                // deserialize object
-                ByteArrayInputStream bais = new ByteArrayInputStream(p.getData(), 0, p.getLength());
-                ObjectInputStream ois = new ObjectInputStream(bais);
-                Object o = ois.readObject();
-                if (o instanceof InputPacket) {
-                    InputPacket ip = (InputPacket) o;
-                    // store into inputQueues
-                    ConcurrentLinkedQueue<InputPacket> q = inputQueues.get(ip.clientId);
-                    if (q != null) q.add(ip);
-                }
-                // ignore other UDP message types for now
-            } catch (SocketException se) {
-                break;
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        for (ServerTransport transport : transports) {
+            transport.close();
         }
     }
 
     private void tick() {
+        if (ticksPerRound > 0 && rotation.size() > 1 && ++roundTicks >= ticksPerRound) {
+            roundTicks = 0;
+            loadMap(rotation.get((rotation.indexOf(mapName) + 1) % rotation.size()));
+        }
+        final MapData map = this.map;
         // process inputs for each player
         long serverTick = System.currentTimeMillis();
         for (Map.Entry<Integer, ServerPlayer> e : players.entrySet()) {
@@ -130,35 +196,29 @@ public class GameServer {
             // consume inputs since last update
             InputPacket ip;
             while (q != null && (ip = q.poll()) != null) {
-                sp.applyInput(ip);
-                // resolve collisions with map walls
-                sp.resolveCollisions(map);
+                sp.applyInput(ip, map.compiled());
                 sp.lastProcessedClientTick = ip.tick;
             }
             // when no input, still apply friction in sp.applyInput called with no movement when needed
         }
         // broadcast state snapshot to all registered clients
-        broadcastSnapshot();
+        if (tickCount++ % snapshotDivisor == 0) {
+            broadcastSnapshot();
+        }
     }
 
     private void broadcastSnapshot() {
         Collection<ClientInfo> conns = clients.values();
         PlayerState[] arr = players.values().stream()
-            .map(p -> new PlayerState(p.id, p.xCoord, p.yCoord, p.velX, p.velY, p.viewAngle))
+            .map(p -> new PlayerState(p.id, p.getXCoord(), p.getYCoord(), p.getVelX(), p.getVelY(), p.viewAngle))
             .toArray(PlayerState[]::new);
-        // For simplicity we don't ack per-client tick here; we'll include last tick processed if we want.
+        long sequence = ++snapshotSequence;
+        long serverTime = System.currentTimeMillis();
         for (ClientInfo ci : conns) {
-            try {
-                StateSnapshot snap = new StateSnapshot(System.currentTimeMillis(), arr, ci.id, players.get(ci.id).lastProcessedClientTick);
-                // serialize into bytes
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(baos);
-                oos.writeObject(snap);
-                oos.flush();
-                byte[] data = baos.toByteArray();
-                DatagramPacket dp = new DatagramPacket(data, data.length, ci.addr, ci.udpPort);
-                udpSocket.send(dp);
-            } catch (Exception ex) { ex.printStackTrace(); }
+            ServerPlayer sp = players.get(ci.id);
+            if (sp == null) continue;
+            StateSnapshot snap = new StateSnapshot(sequence, serverTime, arr, ci.id, sp.lastProcessedClientTick);
+            ci.transport.sendSnapshot(ci, snap);
         }
     }
 }
@@ -0,0 +1,72 @@
+package jangalang.server;
+
+import jangalang.common.net.messages.InputPacket;
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.StateSnapshot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport for single-player and listen servers: message objects are handed across
+ * directly (inputs into the server's input queues, snapshots to the client's receiver), with no
+ * sockets and no serialization.
+ */
+public class LoopbackServerTransport implements ServerTransport {
+    private final Map<Integer, Consumer<StateSnapshot>> receivers = new ConcurrentHashMap<>();
+    private final Map<Integer, Consumer<MapChange>> mapReceivers = new ConcurrentHashMap<>();
+    private GameServer server;
+
+    @Override
+    public void start(GameServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Register a local client; its snapshots are passed to {@code receiver} and map changes to
+     * {@code mapReceiver}, both on the server tick thread.
+     */
+    public int connect(Consumer<StateSnapshot> receiver, Consumer<MapChange> mapReceiver) {
+        int id = server.registerClient(this, null, 0);
+        receivers.put(id, receiver);
+        mapReceivers.put(id, mapReceiver);
+        return id;
+    }
+
+    public void disconnect(int id) {
+        receivers.remove(id);
+        mapReceivers.remove(id);
+        server.unregisterClient(id);
+    }
+
+    public void sendInput(InputPacket input) {
+        server.receiveInput(input);
+    }
+
+    public GameServer getServer() {
+        return server;
+    }
+
+    @Override
+    public void sendSnapshot(ClientInfo client, StateSnapshot snap) {
+        Consumer<StateSnapshot> receiver = receivers.get(client.id);
+        if (receiver != null) {
+            receiver.accept(snap);
+        }
+    }
+
+    @Override
+    public void sendMapChange(ClientInfo client, MapChange change) {
+        Consumer<MapChange> receiver = mapReceivers.get(client.id);
+        if (receiver != null) {
+            receiver.accept(change);
+        }
+    }
+
+    @Override
+    public void close() {
+        receivers.clear();
+        mapReceivers.clear();
+    }
+}
@@ -3,12 +3,15 @@ package jangalang.server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import jangalang.common.ApplicationProperties;
-import jangalang.common.maps.MapData;
-import jangalang.common.maps.MapLoader;
+import jangalang.common.maps.MapCatalog;
 
 public class ServerMain {
     private static final String SERVER_SPLASH =
@@ -21,17 +24,55 @@ public class ServerMain {
         "                    __/ |                     __/ |\n" +
         "                   |___/                     |___/ \n";
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         int tcpPort = ApplicationProperties.getInt("server.tcp");
         int udpPort = ApplicationProperties.getInt("server.udp");
 
         System.out.println(SERVER_SPLASH);
         System.out.printf("Server starting (tcp=%d udp=%d)%n", tcpPort, udpPort);
 
-        MapData map = MapLoader.parseMap("/maps/example.map");
-
-        GameServer server = new GameServer(map, udpPort);
+        GameServer server = createServer();
+        listen(server, tcpPort, udpPort);
         server.start();
+    }
+
+    // the maps shipped on the classpath, played when server.maps names no directory
+    private static final String[] BUILTIN_MAPS = { "/maps/example.map", "/maps/test.map" };
+
+    /**
+     * A server playing the map catalog: every *.map in {@code server.maps} (or the built-in maps),
+     * compiled once into {@code maps.cache}, rotated in {@code server.rotation} order (default: all)
+     * every {@code server.roundseconds} (0: never). Used by the dedicated and the listen server.
+     */
+    public static GameServer createServer() throws IOException {
+        MapCatalog catalog = new MapCatalog(Path.of(ApplicationProperties.getOrDefault("maps.cache", ".jangalang-cache/maps")));
+        String dir = ApplicationProperties.getOrDefault("server.maps", "");
+        if (!dir.isBlank() && Files.isDirectory(Path.of(dir))) {
+            catalog.scan(Path.of(dir));
+        } else {
+            for (String resource : BUILTIN_MAPS) catalog.addResource(resource);
+        }
+        if (catalog.isEmpty()) throw new IOException("No maps in " + dir);
+
+        List<String> order = new ArrayList<>();
+        for (String name : ApplicationProperties.getOrDefault("server.rotation", "").split(",")) {
+            if (catalog.names().contains(name.trim())) order.add(name.trim());
+        }
+        if (order.isEmpty()) order = catalog.names();
+
+        GameServer server = new GameServer(order.get(0), catalog.load(order.get(0)));
+        server.setRotation(catalog, order, Integer.parseInt(ApplicationProperties.getOrDefault("server.roundseconds", "0")));
+        System.out.println("Map rotation: " + order);
+        return server;
+    }
+
+    /**
+     * Accept remote clients: TCP handshakes on {@code tcpPort}, gameplay over UDP on {@code udpPort}.
+     * Used by the dedicated server and by a client hosting a listen server.
+     */
+    public static void listen(GameServer server, int tcpPort, int udpPort) {
+        UdpServerTransport udp = new UdpServerTransport(udpPort);
+        server.addTransport(udp);
 
         try {
             ServerSocket ss = new ServerSocket(tcpPort);
@@ -40,7 +81,7 @@ public class ServerMain {
             acceptPool.submit(() -> {
                 while (true) {
                     Socket s = ss.accept();
-                    acceptPool.submit(new TcpClientHandler(s, server));
+                    acceptPool.submit(new TcpClientHandler(s, server, udp));
                 }
             });
 
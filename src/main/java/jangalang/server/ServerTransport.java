@@ -0,0 +1,16 @@
+package jangalang.server;
+
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.StateSnapshot;
+
+/**
+ * A way for clients to reach a GameServer. Transports hand received inputs to
+ * {@link GameServer#receiveInput} and deliver snapshots and map changes to the clients they registered.
+ */
+public interface ServerTransport {
+    void start(GameServer server);
+    void sendSnapshot(ClientInfo client, StateSnapshot snap);
+    /** Deliver reliably and in order; must not block the caller (the server tick). */
+    void sendMapChange(ClientInfo client, MapChange change);
+    void close();
+}
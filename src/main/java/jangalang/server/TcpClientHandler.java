@@ -2,26 +2,47 @@ package jangalang.server;
 
 import java.net.Socket;
 import java.io.*;
+import java.util.Arrays;
 import jangalang.common.net.messages.*;
+import jangalang.common.maps.CompiledMap;
+import jangalang.common.maps.Lightmap;
+import jangalang.common.maps.MapChunks;
 import jangalang.common.maps.MapData;
+import jangalang.common.maps.MapLayout;
+import jangalang.common.maps.Pvs;
 
 /**
- * Handle a single TCP client for handshake and graceful disconnects.
+ * Handle a single TCP client for handshake, reliable server messages and graceful disconnects.
  * The UDP traffic happens over GameServer's UDP socket.
+ *
+ * Maps are not sent whole: the handshake and map changes carry the map without its walls, and a
+ * streaming thread then sends the walls chunk by chunk, nearest to the player first, each with the
+ * PVS cells and light of its area. Blocking writes pace the stream to what the connection carries.
  */
 public class TcpClientHandler implements Runnable {
     private final Socket socket;
     private final GameServer server;
+    private final UdpServerTransport udp;
+    private ObjectOutputStream out;
 
-    public TcpClientHandler(Socket s, GameServer server) {
+    // the map to stream, replaced on map changes; guarded by streamLock
+    private final Object streamLock = new Object();
+    private MapData streamMap;
+    private int streamRound = -1;
+    private MapChange pendingChange; // announced before its chunks
+
+    public TcpClientHandler(Socket s, GameServer server, UdpServerTransport udp) {
         this.socket = s;
         this.server = server;
+        this.udp = udp;
     }
 
     @Override
     public void run() {
+        int assigned = -1;
         try (ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
              ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream())) {
+            this.out = oos;
 
             Object o = ois.readObject();
             if (!(o instanceof HandshakeRequest)) {
@@ -29,26 +50,221 @@ public class TcpClientHandler implements Runnable {
                 return;
             }
             HandshakeRequest req = (HandshakeRequest) o;
-            // register client
-            int assigned = server.registerClient(socket.getInetAddress(), req.clientUdpPort);
-            MapData map = server.getMap();
-            HandshakeResponse resp = new HandshakeResponse(assigned, server.getUdpPort(), map);
-            oos.writeObject(resp);
-            oos.flush();
-
-            // now wait for Disconnect messages (or just close when connection closes)
-            while (true) {
-                Object in = ois.readObject();
-                if (in instanceof Disconnect) {
-                    Disconnect d = (Disconnect) in;
-                    server.unregisterClient(d.id);
-                    break;
+            // register client; a map change racing this restarts the stream, it is never lost
+            synchronized (oos) {
+                assigned = server.registerClient(udp, socket.getInetAddress(), req.clientUdpPort);
+                udp.addConnection(assigned, this);
+                int round = server.getRound();
+                MapData map = server.getMap();
+                synchronized (streamLock) {
+                    // a change that came in meanwhile is either this map or a newer one to announce
+                    if (streamRound <= round) {
+                        streamMap = map;
+                        streamRound = round;
+                        pendingChange = null;
+                    }
                 }
+                HandshakeResponse resp = new HandshakeResponse(assigned, udp.getUdpPort(), server.getMapName(),
+                                                               map.withoutWalls(), round, map.getWallCount(),
+                                                               new MapLayout(map.compiled()));
+                oos.writeObject(resp);
+                oos.flush();
+                oos.reset();
+            }
+            final int id = assigned;
+            Thread streamer = new Thread(() -> streamLoop(id), "map-stream-" + id);
+            streamer.setDaemon(true);
+            streamer.start();
+
+            // now wait for a Disconnect message, or for the connection to close
+            while (!(ois.readObject() instanceof Disconnect)) {
+                // nothing else is expected from the client
             }
         } catch (EOFException eof) {
             // client disconnected
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            // however the connection ended, the client leaves the game exactly once
+            if (assigned >= 0) {
+                udp.removeConnection(assigned);
+                server.unregisterClient(assigned);
+            }
+            synchronized (streamLock) {
+                streamLock.notifyAll(); // let the streamer see the closed socket
+            }
+        }
+    }
+
+    /** Announce a map change and stream the new map; returns at once. */
+    void changeMap(MapChange change) {
+        synchronized (streamLock) {
+            streamMap = change.map;
+            streamRound = change.round;
+            pendingChange = change;
+            streamLock.notifyAll();
+        }
+    }
+
+    // send chunks of the current map until all are out, starting over when the map changes
+    private void streamLoop(int id) {
+        int round = -1;
+        MapData map = null;
+        ChunkOrder order = null;
+        boolean done = true;
+        try {
+            while (!socket.isClosed()) {
+                MapChange announce = null;
+                synchronized (streamLock) {
+                    while (done && streamRound == round && !socket.isClosed()) {
+                        streamLock.wait();
+                    }
+                    if (streamRound != round) {
+                        round = streamRound;
+                        map = streamMap;
+                        announce = pendingChange;
+                        pendingChange = null;
+                        CompiledMap compiled = map.compiled();
+                        // with a PVS or lightmap, chunks without walls still cover cells
+                        order = new ChunkOrder(map.chunks(), compiled.getPvs() != null || compiled.getLightmap() != null);
+                        done = false;
+                    }
+                }
+                if (socket.isClosed()) break;
+                if (announce != null) {
+                    send(new MapChange(announce.round, announce.name, map.withoutWalls(), map.getWallCount(),
+                                       new MapLayout(map.compiled())));
+                }
+                int chunk = order.next(server.getPlayerPosition(id), map);
+                done = order.isDone();
+                if (chunk >= 0) send(chunk(round, map, chunk, done));
+            }
+        } catch (IOException e) {
+            // connection gone; the handler thread cleans up
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // a chunk's walls and their light, with the PVS cells and floor light under it
+    private static MapChunk chunk(int round, MapData map, int chunk, boolean last) {
+        MapChunks chunks = map.chunks();
+        CompiledMap compiled = map.compiled();
+        double[] packed = compiled.getWalls();
+        int[] indices = Arrays.copyOfRange(chunks.getWalls(), chunks.start(chunk), chunks.end(chunk));
+        double[] walls = new double[indices.length * CompiledMap.STRIDE];
+        for (int k = 0; k < indices.length; ++k) {
+            System.arraycopy(packed, indices[k] * CompiledMap.STRIDE, walls, k * CompiledMap.STRIDE, CompiledMap.STRIDE);
+        }
+
+        int[] lightStarts = null;
+        int[] lightOffsets = null;
+        byte[] wallLight = null;
+        int[] floorRect = null;
+        byte[] floorLight = null;
+        Lightmap light = compiled.getLightmap();
+        if (light != null) {
+            int[] offsets = light.getWallOffsets();
+            lightStarts = new int[indices.length];
+            lightOffsets = new int[indices.length + 1];
+            for (int k = 0; k < indices.length; ++k) {
+                lightStarts[k] = offsets[indices[k]];
+                lightOffsets[k + 1] = lightOffsets[k] + offsets[indices[k] + 1] - offsets[indices[k]];
+            }
+            wallLight = new byte[lightOffsets[indices.length]];
+            for (int k = 0; k < indices.length; ++k) {
+                System.arraycopy(light.getWallLight(), lightStarts[k], wallLight, lightOffsets[k], lightOffsets[k + 1] - lightOffsets[k]);
+            }
+            floorRect = chunks.cover(chunk, light.getFloorX(), light.getFloorY(), 1, light.getFloorCols(), light.getFloorRows());
+            int w = floorRect[2] - floorRect[0];
+            floorLight = new byte[w * (floorRect[3] - floorRect[1])];
+            for (int cy = floorRect[1]; cy < floorRect[3]; ++cy) {
+                System.arraycopy(light.getFloorLight(), cy * light.getFloorCols() + floorRect[0], floorLight, (cy - floorRect[1]) * w, w);
+            }
+        }
+
+        int[] pvsRect = null;
+        int[] cellStarts = null;
+        int[] cellOffsets = null;
+        int[] cellWalls = null;
+        Pvs pvs = compiled.getPvs();
+        if (pvs != null) {
+            pvsRect = chunks.cover(chunk, pvs.getOriginX(), pvs.getOriginY(), pvs.getCellSize(), pvs.getCols(), pvs.getRows());
+            int n = (pvsRect[2] - pvsRect[0]) * (pvsRect[3] - pvsRect[1]);
+            cellStarts = new int[n];
+            cellOffsets = new int[n + 1];
+            int k = 0;
+            for (int cy = pvsRect[1]; cy < pvsRect[3]; ++cy) {
+                for (int cx = pvsRect[0]; cx < pvsRect[2]; ++cx, ++k) {
+                    int cell = cy * pvs.getCols() + cx;
+                    cellStarts[k] = pvs.start(cell);
+                    cellOffsets[k + 1] = cellOffsets[k] + pvs.end(cell) - pvs.start(cell);
+                }
+            }
+            cellWalls = new int[cellOffsets[n]];
+            for (k = 0; k < n; ++k) {
+                System.arraycopy(pvs.getWalls(), cellStarts[k], cellWalls, cellOffsets[k], cellOffsets[k + 1] - cellOffsets[k]);
+            }
+        }
+        return new MapChunk(round, indices, walls, lightStarts, lightOffsets, wallLight,
+                            pvsRect, cellStarts, cellOffsets, cellWalls, floorRect, floorLight, last);
+    }
+
+    /** Write a message to this client; reset so a resent map is not sent as a back-reference. */
+    private void send(Object message) throws IOException {
+        ObjectOutputStream oos = this.out;
+        if (oos == null) return;
+        synchronized (oos) {
+            oos.writeObject(message);
+            oos.flush();
+            oos.reset();
+        }
+    }
+
+    // the chunks not yet sent, nearest to the player first; re-sorted as they cross chunks
+    private static final class ChunkOrder {
+        private final MapChunks chunks;
+        private final int[] pending;
+        private int next = 0;
+        private int sortedFrom = -1;
+
+        // every chunk, or only those with walls
+        ChunkOrder(MapChunks chunks, boolean empty) {
+            this.chunks = chunks;
+            int n = 0;
+            int[] all = new int[chunks.count()];
+            for (int c = 0; c < chunks.count(); ++c) {
+                if (empty || chunks.end(c) > chunks.start(c)) all[n++] = c;
+            }
+            this.pending = Arrays.copyOf(all, n);
+        }
+
+        boolean isDone() {
+            return next == pending.length;
+        }
+
+        // the next chunk to send, or -1 once all are out; players not placed yet stream from the first spawn
+        int next(double[] position, MapData map) {
+            if (next == pending.length) return -1;
+            if (position == null) {
+                position = map.getSpawns().isEmpty() ? new double[] { 0, 0 }
+                        : new double[] { map.getSpawns().get(0).getKey(), map.getSpawns().get(0).getValue() };
+            }
+            int from = chunks.chunkAt(position[0], position[1]);
+            if (from != sortedFrom) {
+                sortedFrom = from;
+                // distance in the high bits, chunk in the low: one primitive sort
+                long[] keyed = new long[pending.length - next];
+                for (int k = 0; k < keyed.length; ++k) {
+                    int c = pending[next + k];
+                    keyed[k] = ((long) chunks.distanceSq(from, c) << 32) | c;
+                }
+                Arrays.sort(keyed);
+                for (int k = 0; k < keyed.length; ++k) {
+                    pending[next + k] = (int) keyed[k];
+                }
+            }
+            return pending[next++];
         }
     }
 }
@@ -0,0 +1,106 @@
+package jangalang.server;
+
+import jangalang.common.net.messages.InputPacket;
+import jangalang.common.net.messages.MapChange;
+import jangalang.common.net.messages.StateSnapshot;
+
+import java.io.*;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Inputs and snapshots as Java-serialized UDP datagrams; clients are registered over TCP by
+ * TcpClientHandler, whose connection also carries the reliable messages (map changes and
+ * streamed map chunks).
+ */
+public class UdpServerTransport implements ServerTransport {
+    private final int udpPort;
+    private DatagramSocket udpSocket;
+    private final ExecutorService udpReceiverExecutor = Executors.newSingleThreadExecutor();
+    private final Map<Integer, TcpClientHandler> connections = new ConcurrentHashMap<>();
+    private GameServer server;
+
+    public UdpServerTransport(int udpPort) {
+        this.udpPort = udpPort;
+        try {
+            this.udpSocket = new DatagramSocket(udpPort);
+        } catch (SocketException se) {
+            se.printStackTrace();
+        }
+    }
+
+    public int getUdpPort() {
+        return udpPort;
+    }
+
+    @Override
+    public void start(GameServer server) {
+        this.server = server;
+        udpReceiverExecutor.submit(this::udpReceiveLoop);
+    }
+
+    /** The TCP connection reliable messages for client {@code id} go through. */
+    public void addConnection(int id, TcpClientHandler connection) {
+        connections.put(id, connection);
+    }
+
+    public void removeConnection(int id) {
+        connections.remove(id);
+    }
+
+    @Override
+    public void close() {
+        udpReceiverExecutor.shutdownNow();
+        udpSocket.close();
+    }
+
+    private void udpReceiveLoop() {
+        byte[] buf = new byte[4096];
+        DatagramPacket p = new DatagramPacket(buf, buf.length);
+        while (!udpSocket.isClosed()) {
+            try {
+                udpSocket.receive(p);
+                // deserialize object
+                ByteArrayInputStream bais = new ByteArrayInputStream(p.getData(), 0, p.getLength());
+                ObjectInputStream ois = new ObjectInputStream(bais);
+                Object o = ois.readObject();
+                if (o instanceof InputPacket) {
+                    server.receiveInput((InputPacket) o);
+                }
+                // ignore other UDP message types for now
+            } catch (SocketException se) {
+                break;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void sendMapChange(ClientInfo client, MapChange change) {
+        TcpClientHandler connection = connections.get(client.id);
+        if (connection != null) {
+            // the connection's streaming thread announces it and sends the new map's chunks
+            connection.changeMap(change);
+        }
+    }
+
+    @Override
+    public void sendSnapshot(ClientInfo client, StateSnapshot snap) {
+        try {
+            // serialize into bytes
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(snap);
+            oos.flush();
+            byte[] data = baos.toByteArray();
+            DatagramPacket dp = new DatagramPacket(data, data.length, client.addr, client.udpPort);
+            udpSocket.send(dp);
+        } catch (Exception ex) { ex.printStackTrace(); }
+    }
+}
@@ -0,0 +1,122 @@
+package jangalang.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import jangalang.client.game.PredictedPlayer;
+import jangalang.common.input.Actions;
+import jangalang.common.maps.CompiledMap;
+import jangalang.common.maps.MapData;
+import jangalang.common.maps.Wall;
+import jangalang.common.net.messages.InputPacket;
+import jangalang.server.ServerPlayer;
+
+/**
+ * The server and client prediction must step to bit-identical states for the same inputs, or every
+ * tick would trigger a reconciliation.
+ */
+public class MovementDeterminismTest {
+    private static final double START_X = 5.0;
+    private static final double START_Y = 5.0;
+
+    // a 10x10 room with a diagonal wall and a pillar, so slides happen at several angles
+    private static CompiledMap room() {
+        MapData map = new MapData();
+        map.addWall(new Wall(0.0, 0.0, 10.0, 0.0));
+        map.addWall(new Wall(10.0, 0.0, 10.0, 10.0));
+        map.addWall(new Wall(10.0, 10.0, 0.0, 10.0));
+        map.addWall(new Wall(0.0, 10.0, 0.0, 0.0));
+        map.addWall(new Wall(6.0, 2.0, 8.0, 4.0));
+        map.addWall(new Wall(2.0, 7.0, 3.0, 7.0));
+        map.addWall(new Wall(3.0, 7.0, 3.0, 8.0));
+        map.addWall(new Wall(3.0, 8.0, 2.0, 8.0));
+        map.addWall(new Wall(2.0, 8.0, 2.0, 7.0));
+        return map.compiled();
+    }
+
+    private static final class Players {
+        final ServerPlayer server = new ServerPlayer(1, START_X, START_Y);
+        final PredictedPlayer client;
+        final CompiledMap map;
+        long tick = 0;
+
+        Players(CompiledMap map) {
+            this.map = map;
+            this.client = new PredictedPlayer(map);
+            client.setXCoord(START_X);
+            client.setYCoord(START_Y);
+        }
+
+        void step(int actions, double viewAngle) {
+            InputPacket ip = new InputPacket(1, ++tick, actions, 0, viewAngle);
+            server.applyInput(ip, map);
+            client.applyInput(ip);
+            assertSame("x", server.getXCoord(), client.getXCoord());
+            assertSame("y", server.getYCoord(), client.getYCoord());
+            assertSame("velX", server.getVelX(), client.getVelX());
+            assertSame("velY", server.getVelY(), client.getVelY());
+        }
+
+        private void assertSame(String what, double serverValue, double clientValue) {
+            assertEquals(Double.doubleToRawLongBits(serverValue), Double.doubleToRawLongBits(clientValue),
+                         () -> what + " differs at tick " + tick + ": server " + serverValue + ", client " + clientValue);
+        }
+    }
+
+    @Test
+    public void collisionStopsBothSidesIdentically() {
+        Players p = new Players(room());
+        for (int i = 0; i < 120; ++i) {
+            p.step(Actions.FORWARD, 0.0);
+        }
+        // pressed against the east wall
+        assertTrue(p.server.getXCoord() <= 10.0 - Movement.RADIUS + 1e-9);
+        assertTrue(p.server.getXCoord() > 9.0);
+        assertEquals(0.0, p.server.getVelX(), 1e-9);
+    }
+
+    @Test
+    public void wallSlideIsIdentical() {
+        Players p = new Players(room());
+        for (int i = 0; i < 120; ++i) {
+            p.step(Actions.FORWARD, 0.0);
+        }
+        double y = p.server.getYCoord();
+        // into the east wall at an angle: x is held, y keeps moving
+        for (int i = 0; i < 30; ++i) {
+            p.step(Actions.FORWARD, 0.4);
+        }
+        assertTrue(p.server.getXCoord() <= 10.0 - Movement.RADIUS + 1e-9);
+        assertTrue(p.server.getYCoord() > y + 1.0);
+
+        // along the diagonal wall and into the corners
+        for (int i = 0; i < 200; ++i) {
+            p.step(Actions.FORWARD | Actions.LEFT, -2.3);
+        }
+        for (int i = 0; i < 200; ++i) {
+            p.step(Actions.BACKWARD | Actions.RIGHT, 0.9);
+        }
+    }
+
+    @Test
+    public void randomInputsAreIdentical() {
+        Players p = new Players(room());
+        Random random = new Random(29);
+        int actions = 0;
+        double viewAngle = 0;
+        for (int i = 0; i < 5000; ++i) {
+            // hold inputs for a while, like a player would, so walls are actually reached
+            if (i % 20 == 0) {
+                actions = random.nextInt(16);
+            }
+            viewAngle += (random.nextDouble() - 0.5) * 0.2;
+            p.step(actions, viewAngle);
+            assertTrue(p.server.getXCoord() > 0 && p.server.getXCoord() < 10
+                       && p.server.getYCoord() > 0 && p.server.getYCoord() < 10, "left the room at tick " + p.tick);
+        }
+    }
+}